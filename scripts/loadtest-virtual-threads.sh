@@ -0,0 +1,131 @@
+#!/usr/bin/env bash
+#
+# 平台线程与虚拟线程模式对比压测
+#
+# 以指定模式启动应用，按并发梯度同时发起 /api/chat/send 请求，记录每档的成功数、
+# 耗时、进程峰值RSS、线程数与堆占用，并据此估算每个进行中请求的内存开销。
+# 两种模式分别运行一次，对比同一并发下的结果即可。
+# 只有返回 code 200 的请求计为成功；舱壁拒绝或后端不可用时接口返回 code 503 的兜底回答，计为失败。
+#
+# 结果解读的两点限制：
+#   1. /api/chat/send 返回Mono，Tomcat线程在等待后端期间即已释放，两种模式的差异主要来自
+#      RAG舱壁的线程数（默认16个平台线程，虚拟线程模式256个虚拟线程），而非Tomcat是否使用虚拟线程。
+#      若只想比较线程类型，平台模式可传 APP_ARGS="--bulkhead.rag.pool-size=256" 使两边线程数一致。
+#   2. 虚拟线程模式的数据须在JDK 21及以上实测，本脚本只在JDK 17上验证过平台线程模式。
+#
+# 需要 JDK 21 及以上（虚拟线程模式的编译目标为21）：
+#   export JAVA_HOME=/path/to/jdk-21
+#   mvn -B -Pvirtual-threads package -DskipTests
+#   scripts/loadtest-virtual-threads.sh platform 50 100 200 400
+#   scripts/loadtest-virtual-threads.sh virtual  50 100 200 400
+#
+# 后端应当足够慢，才能让请求在等待期间积压，可用环境变量指向真实或模拟的Dify、Ollama：
+#   DIFY_URL=http://127.0.0.1:18436/v1 OLLAMA_URL=http://127.0.0.1:18436 \
+#     scripts/loadtest-virtual-threads.sh virtual 100 200
+#
+# 环境变量：
+#   JAVA        java可执行文件，默认 $JAVA_HOME/bin/java
+#   JAR         应用jar包，默认 target/rag-try-1.0.0.jar
+#   PORT        应用端口，默认 18080
+#   DIFY_URL    Dify API地址，默认沿用 application.yml
+#   OLLAMA_URL  Ollama地址，默认沿用 application.yml
+#   STRATEGY    路由策略，默认 rag-first
+#   TIMEOUT     单个请求超时（秒），默认 120
+#   JAVA_OPTS   额外的JVM参数，默认 -Xmx1g
+#   APP_ARGS    额外的应用参数
+#
+set -euo pipefail
+
+MODE=${1:-}
+if [[ "$MODE" != "platform" && "$MODE" != "virtual" ]]; then
+    echo "用法: $0 platform|virtual [并发数...]" >&2
+    exit 1
+fi
+shift
+LEVELS=("$@")
+[[ ${#LEVELS[@]} -eq 0 ]] && LEVELS=(50 100 200)
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+JAVA=${JAVA:-${JAVA_HOME:+$JAVA_HOME/bin/}java}
+JAR=${JAR:-$ROOT/target/rag-try-1.0.0.jar}
+PORT=${PORT:-18080}
+STRATEGY=${STRATEGY:-rag-first}
+TIMEOUT=${TIMEOUT:-120}
+JAVA_OPTS=${JAVA_OPTS:--Xmx1g}
+BASE=http://127.0.0.1:$PORT
+WORK=$(mktemp -d)
+
+JAVA_MAJOR=$("$JAVA" -XshowSettings:properties -version 2>&1 | awk -F'= ' '/java.specification.version/ {print $2}')
+if [[ "$MODE" == "virtual" && "${JAVA_MAJOR%%.*}" -lt 21 ]]; then
+    echo "虚拟线程模式需要JDK 21及以上，当前为 $JAVA_MAJOR" >&2
+    exit 1
+fi
+if [[ ! -f "$JAR" ]]; then
+    echo "找不到 $JAR，请先执行 mvn -B -Pvirtual-threads package -DskipTests" >&2
+    exit 1
+fi
+
+ARGS=(--server.port="$PORT" --rag.knowledge.auto-reload=false --smart-routing.strategy="$STRATEGY")
+[[ "$MODE" == "virtual" ]] && ARGS+=(--spring.profiles.active=virtual-threads)
+[[ -n "${DIFY_URL:-}" ]] && ARGS+=(--dify.api.base-url="$DIFY_URL")
+[[ -n "${OLLAMA_URL:-}" ]] && ARGS+=(--rag.ollama.base-url="$OLLAMA_URL")
+# shellcheck disable=SC2206
+[[ -n "${APP_ARGS:-}" ]] && ARGS+=($APP_ARGS)
+
+# shellcheck disable=SC2086
+"$JAVA" $JAVA_OPTS -jar "$JAR" "${ARGS[@]}" > "$WORK/app.log" 2>&1 &
+PID=$!
+trap 'rc=$?; kill $PID 2>/dev/null; wait $PID 2>/dev/null || true; rm -rf "$WORK"; exit $rc' EXIT
+
+echo "模式 $MODE，JDK $JAVA_MAJOR，PID $PID，日志 $WORK/app.log"
+for _ in $(seq 1 120); do
+    curl -sf "$BASE/api/system/bulkheads" > /dev/null 2>&1 && break
+    kill -0 $PID 2>/dev/null || { cat "$WORK/app.log" >&2; exit 1; }
+    sleep 1
+done
+
+rss_kb() { awk '/^VmRSS/ {print $2}' "/proc/$PID/status"; }
+threads() { awk '/^Threads/ {print $2}' "/proc/$PID/status"; }
+heap_kb() { jcmd_out=$("${JAVA%java}jcmd" "$PID" GC.heap_info 2>/dev/null || true)
+            echo "$jcmd_out" | awk '/used/ {for (i = 1; i <= NF; i++) if ($i == "used") {gsub(/K/, "", $(i + 1)); print $(i + 1); exit}}'; }
+
+send() {
+    curl -s -o "$WORK/body.$1" -w '%{http_code} %{time_total}\n' --max-time "$TIMEOUT" \
+        -H 'Content-Type: application/json' \
+        -d "{\"message\":\"压测问题 $1\",\"user\":\"loadtest-$1\"}" \
+        "$BASE/api/chat/send" >> "$WORK/results" 2>/dev/null || echo "000 $TIMEOUT" >> "$WORK/results"
+}
+
+# 预热：触发类加载与连接池建立，再取空闲时的基线
+send warmup > /dev/null; rm -f "$WORK/results" "$WORK"/body.*
+sleep 2
+BASE_RSS=$(rss_kb)
+BASE_HEAP=$(heap_kb)
+echo "空闲RSS ${BASE_RSS}KB，堆 ${BASE_HEAP:-?}KB，线程 $(threads)"
+printf '%-8s %-6s %-6s %-9s %-9s %-12s %-10s %-12s %-14s\n' \
+    并发 成功 失败 p50秒 最大秒 峰值RSS_KB 峰值线程 峰值堆_KB 每请求内存_KB
+
+for n in "${LEVELS[@]}"; do
+    rm -f "$WORK/results" "$WORK"/body.*
+    senders=()
+    for i in $(seq 1 "$n"); do send "$i" & senders+=($!); done
+    peak_rss=0; peak_threads=0; peak_heap=0
+    while kill -0 "${senders[@]}" 2>/dev/null; do
+        r=$(rss_kb); t=$(threads); h=$(heap_kb)
+        (( r > peak_rss )) && peak_rss=$r
+        (( t > peak_threads )) && peak_threads=$t
+        [[ -n "$h" ]] && (( h > peak_heap )) && peak_heap=$h
+        [[ -f "$WORK/bulkheads" ]] || curl -s "$BASE/api/system/bulkheads" > "$WORK/bulkheads"
+        sleep 0.2
+    done
+    wait "${senders[@]}" || true
+    ok=$(grep -l '"code":200' "$WORK"/body.* 2>/dev/null | wc -l || true)
+    failed=$(( n - ok ))
+    read -r p50 max < <(awk '{print $2}' "$WORK/results" | sort -n | awk '{a[NR] = $1} END {print a[int((NR + 1) / 2)], a[NR]}')
+    per_request=$(( (peak_rss - BASE_RSS) / n ))
+    printf '%-8s %-6s %-6s %-9s %-9s %-12s %-10s %-12s %-14s\n' \
+        "$n" "$ok" "$failed" "$p50" "$max" "$peak_rss" "$peak_threads" "$peak_heap" "$per_request"
+    echo "  负载中的舱壁状态: $(cat "$WORK/bulkheads")"
+    rm -f "$WORK/bulkheads"
+    sleep 2
+done
@@ -0,0 +1,102 @@
+package com.echo.ragtry.config;
+
+import com.echo.ragtry.service.BulkheadExecutor;
+import com.echo.ragtry.service.VirtualThreads;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 舱壁线程池配置类
+ * 为RAG检索生成、批量向量化、后台索引分别创建独立的有界线程池；
+ * Dify调用走非阻塞WebClient，等待响应时不占用线程，不设舱壁
+ */
+@Configuration
+@Slf4j
+public class BulkheadConfiguration {
+
+    public static final String RAG = "rag";
+    public static final String EMBEDDING = "embedding";
+    public static final String INDEXING = "indexing";
+
+    @Bean(destroyMethod = "shutdown")
+    public BulkheadExecutor ragExecutor(BulkheadProperties properties) {
+        return create(RAG, properties.getRag(), properties.isVirtualThreads());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public BulkheadExecutor embeddingExecutor(BulkheadProperties properties) {
+        return create(EMBEDDING, properties.getEmbedding(), false);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public BulkheadExecutor indexingExecutor(BulkheadProperties properties) {
+        return create(INDEXING, properties.getIndexing(), false);
+    }
+
+    private BulkheadExecutor create(String name, Pool pool, boolean virtualThreads) {
+        if (virtualThreads) {
+            if (VirtualThreads.isSupported()) {
+                log.info("舱壁线程池 {}: 虚拟线程数 {}，队列容量 {}", name, pool.getPoolSize(), pool.getQueueCapacity());
+                return new BulkheadExecutor(name, pool.getPoolSize(), pool.getQueueCapacity(),
+                        VirtualThreads.factory(name + "-"), true);
+            }
+            log.warn("当前JDK {} 不支持虚拟线程，舱壁线程池 {} 使用平台线程", System.getProperty("java.version"), name);
+        }
+        log.info("舱壁线程池 {}: 线程数 {}，队列容量 {}", name, pool.getPoolSize(), pool.getQueueCapacity());
+        return new BulkheadExecutor(name, pool.getPoolSize(), pool.getQueueCapacity());
+    }
+
+    /**
+     * 舱壁线程池配置属性
+     */
+    @Data
+    @Configuration
+    @ConfigurationProperties(prefix = "bulkhead")
+    public static class BulkheadProperties {
+
+        /**
+         * 是否改用虚拟线程（需JDK 21及以上）：Tomcat请求处理与RAG舱壁的工作线程均为虚拟线程，
+         * 舱壁的线程数仍限制对后端的并发，可按需调大；向量化与后台索引保持平台线程
+         */
+        private boolean virtualThreads = false;
+
+        /**
+         * RAG检索与生成（非阻塞问答中的检索步骤）
+         */
+        private Pool rag = new Pool(16, 64);
+
+        /**
+         * 知识库批量向量化，线程数不应小于 rag.async.max-in-flight-batches
+         */
+        private Pool embedding = new Pool(4, 16);
+
+        /**
+         * 后台索引构建（启动预计算、重新加载），构建过程本身已串行化
+         */
+        private Pool indexing = new Pool(1, 4);
+    }
+
+    @Data
+    public static class Pool {
+        /**
+         * 线程数
+         */
+        private int poolSize;
+
+        /**
+         * 等待队列容量，队列满时拒绝新任务
+         */
+        private int queueCapacity;
+
+        public Pool() {
+        }
+
+        public Pool(int poolSize, int queueCapacity) {
+            this.poolSize = poolSize;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
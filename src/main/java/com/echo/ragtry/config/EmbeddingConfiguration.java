@@ -0,0 +1,39 @@
+package com.echo.ragtry.config;
+
+import com.echo.ragtry.embedding.EmbeddingProvider;
+import com.echo.ragtry.embedding.OllamaEmbeddingProvider;
+import com.echo.ragtry.embedding.OnnxEmbeddingProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 向量化配置类
+ */
+@Configuration
+@Slf4j
+public class EmbeddingConfiguration {
+
+    /**
+     * 根据 rag.embedding.provider 选择向量化提供方：ollama、onnx
+     */
+    @Bean
+    public EmbeddingProvider embeddingProvider(RAGConfiguration ragConfig) {
+        RAGConfiguration.Embedding embedding = ragConfig.getEmbedding();
+        String provider = embedding.getProvider();
+
+        if (OnnxEmbeddingProvider.NAME.equals(provider)) {
+            int threads = embedding.getThreads();
+            if (threads <= 0) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            return new OnnxEmbeddingProvider(threads, embedding.getBatchSize());
+        }
+
+        if (!OllamaEmbeddingProvider.NAME.equals(provider)) {
+            log.warn("未知的向量化提供方: {}，使用 {}", provider, OllamaEmbeddingProvider.NAME);
+        }
+        log.info("向量化提供方: {}，模型: {}", OllamaEmbeddingProvider.NAME, ragConfig.getOllama().getEmbeddingModel());
+        return new OllamaEmbeddingProvider(ragConfig.getOllama());
+    }
+}
@@ -0,0 +1,31 @@
+package com.echo.ragtry.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+
+/**
+ * Ollama配置类
+ */
+@Configuration
+public class OllamaConfiguration {
+
+    /**
+     * 创建用于调用Ollama生成接口的WebClient
+     * 流式生成时超时按相邻两次读取的间隔计算，长回答不会因总耗时超时
+     */
+    @Bean
+    public WebClient ollamaWebClient(RAGConfiguration ragConfig) {
+        RAGConfiguration.Ollama ollama = ragConfig.getOllama();
+        HttpClient httpClient = HttpClient.create()
+                .responseTimeout(Duration.ofSeconds(ollama.getTimeout()));
+        return WebClient.builder()
+                .baseUrl(ollama.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
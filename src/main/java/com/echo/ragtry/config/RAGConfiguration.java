@@ -18,6 +18,11 @@ public class RAGConfiguration {
      */
     private Ollama ollama = new Ollama();
 
+    /**
+     * 向量化配置
+     */
+    private Embedding embedding = new Embedding();
+
     /**
      * 搜索相关配置
      */
@@ -33,6 +38,11 @@ public class RAGConfiguration {
      */
     private Knowledge knowledge = new Knowledge();
 
+    /**
+     * 语义答案缓存配置
+     */
+    private AnswerCache answerCache = new AnswerCache();
+
     @Data
     public static class Ollama {
         /**
@@ -61,6 +71,24 @@ public class RAGConfiguration {
         private int maxRetries = 3;
     }
 
+    @Data
+    public static class Embedding {
+        /**
+         * 向量化提供方：ollama（HTTP调用Ollama）、onnx（进程内all-MiniLM-L6-v2）
+         */
+        private String provider = "ollama";
+
+        /**
+         * onnx推理线程数，0表示使用CPU核数
+         */
+        private int threads = 0;
+
+        /**
+         * onnx单次推理的最大条数
+         */
+        private int batchSize = 16;
+    }
+
     @Data
     public static class Search {
         /**
@@ -77,14 +105,191 @@ public class RAGConfiguration {
          * 向量缓存大小
          */
         private int embeddingCacheSize = 1000;
+
+        /**
+         * 向量打分内核：auto（优先Vector API）、vector、scalar
+         */
+        private String kernel = "auto";
+
+        /**
+         * 检索模式：exact（精确扫描）、parallel（并行分片精确扫描）、hnsw（近似最近邻）
+         */
+        private String mode = "exact";
+
+        /**
+         * HNSW索引参数
+         */
+        private Hnsw hnsw = new Hnsw();
+
+        /**
+         * 并行分片扫描参数
+         */
+        private Parallel parallel = new Parallel();
+
+        /**
+         * 关键词检索参数
+         */
+        private Keyword keyword = new Keyword();
+
+        /**
+         * 混合检索参数
+         */
+        private Hybrid hybrid = new Hybrid();
+
+        /**
+         * 常见问题快速匹配参数
+         */
+        private Faq faq = new Faq();
+    }
+
+    @Data
+    public static class Faq {
+        /**
+         * 是否启用，查询与知识库问题完全相同或完整包含时直接返回答案
+         */
+        private boolean enabled = true;
+
+        /**
+         * 按包含关系命中时问题的最小长度（忽略空白与标点）
+         */
+        private int minContainedLength = 6;
+    }
+
+    @Data
+    public static class Hybrid {
+
+        public static final String FUSION_RRF = "rrf";
+        public static final String FUSION_WEIGHTED = "weighted";
+
+        /**
+         * 是否启用混合检索，关闭时向量检索无结果才降级到关键词检索
+         */
+        private boolean enabled = false;
+
+        /**
+         * 融合方式：rrf（倒数排名融合）、weighted（按各路最高分归一化后加权求和）
+         */
+        private String fusion = FUSION_RRF;
+
+        /**
+         * RRF平滑常数，得分为 weight / (rrfK + rank)
+         */
+        private int rrfK = 60;
+
+        /**
+         * 向量召回权重
+         */
+        private double vectorWeight = 1.0;
+
+        /**
+         * 关键词召回权重
+         */
+        private double keywordWeight = 1.0;
+
+        /**
+         * 每路召回的候选数，不小于max-results
+         */
+        private int candidates = 20;
+
+        /**
+         * 向量召回时间预算(毫秒)，包含查询向量化耗时
+         */
+        private long vectorBudget = 2000;
+
+        /**
+         * 关键词召回时间预算(毫秒)
+         */
+        private long keywordBudget = 200;
+
+        /**
+         * 召回线程数
+         */
+        private int poolSize = 8;
+    }
+
+    @Data
+    public static class Keyword {
+        /**
+         * BM25词频饱和参数
+         */
+        private double k1 = 1.2;
+
+        /**
+         * BM25文档长度归一化参数
+         */
+        private double b = 0.75;
+
+        /**
+         * 条目至少需命中的查询词比例，过低时容易返回不相关的答案
+         */
+        private double minMatchRatio = 0.5;
+    }
+
+    @Data
+    public static class Parallel {
+        /**
+         * 专用线程池大小，0表示使用CPU核数
+         */
+        private int poolSize = 0;
+
+        /**
+         * 单个分片的最小向量数，知识库较小时保持单线程扫描
+         */
+        private int minShardSize = 16384;
+    }
+
+    @Data
+    public static class Hnsw {
+        /**
+         * 每个节点的最大邻居数（第0层为其两倍）
+         */
+        private int m = 16;
+
+        /**
+         * 建图时的候选集大小
+         */
+        private int efConstruction = 200;
+
+        /**
+         * 检索时的候选集大小，越大召回越高、耗时越长
+         */
+        private int efSearch = 64;
+    }
+
+    @Data
+    public static class AnswerCache {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = true;
+
+        /**
+         * 查询向量相似度不低于该值且检索到相同知识条目时复用答案
+         */
+        private double similarityThreshold = 0.92;
+
+        /**
+         * 最大缓存答案数
+         */
+        private int maxEntries = 2000;
+
+        /**
+         * 答案有效期(秒)
+         */
+        private long ttl = 3600;
     }
 
     @Data
     public static class Async {
         /**
-         * 预计算向量的延迟(毫秒)
+         * 预计算时每批向量化的条数
          */
-        private long precomputeDelay = 1000;
+        private int batchSize = 32;
+
+        /**
+         * 预计算时同时在途的最大批数，实际并发按Ollama延迟自适应调整
+         */
+        private int maxInFlightBatches = 4;
 
         /**
          * 健康检查间隔(秒)
@@ -95,14 +300,30 @@ public class RAGConfiguration {
     @Data
     public static class Knowledge {
         /**
-         * 知识库基础路径
+         * 知识库根目录，递归加载其中全部MD文档
+         * 可带 classpath: 或 file: 前缀，不带前缀时优先使用文件系统目录，不存在时从classpath查找
          */
         private String basePath = "knowledge";
 
         /**
-         * 是否自动重载
+         * 并行解析MD文档的线程数，0表示使用CPU核数
+         */
+        private int loaderThreads = 0;
+
+        /**
+         * 是否监听知识库目录，文件变化后自动增量更新
          */
         private boolean autoReload = true;
+
+        /**
+         * 文件监听的防抖时间(毫秒)，一批修改静默该时长后才重新加载
+         */
+        private long watchDebounce = 1000;
+
+        /**
+         * 向量持久化文件路径，为空时不持久化
+         */
+        private String embeddingStore = "data/embeddings.bin";
     }
 }
 
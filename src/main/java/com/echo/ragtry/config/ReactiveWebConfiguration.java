@@ -0,0 +1,21 @@
+package com.echo.ragtry.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 响应式Web配置类
+ * 以reactive配置运行时生效；Tomcat同在类路径上时Spring Boot默认仍选用Tomcat，这里显式改用Netty，
+ * 由少量事件循环线程承载全部连接，等待大模型响应的请求不再各占一个线程
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebConfiguration {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -18,7 +18,7 @@ public class SmartRoutingConfiguration {
     private boolean enabled = true;
 
     /**
-     * 路由策略：rag-first, dify-first, parallel
+     * 路由策略：rag-first, dify-first, parallel, hedged, adaptive
      */
     private String strategy = "rag-first";
 
@@ -31,5 +31,66 @@ public class SmartRoutingConfiguration {
      * 超时时间（秒）
      */
     private int timeout = 30;
+
+    /**
+     * 对冲策略配置
+     */
+    private Hedge hedge = new Hedge();
+
+    /**
+     * 自适应策略配置
+     */
+    private Adaptive adaptive = new Adaptive();
+
+    @Data
+    public static class Hedge {
+        /**
+         * 主后端：rag 或 dify，另一个作为对冲后端
+         */
+        private String primary = "rag";
+
+        /**
+         * 固定对冲延迟（毫秒），0表示使用主后端近期耗时的分位数
+         */
+        private long delay = 0;
+
+        /**
+         * 自动对冲延迟取主后端耗时的分位数
+         */
+        private double percentile = 95;
+
+        /**
+         * 样本数达到该值后才使用分位数，之前使用默认延迟
+         */
+        private int minSamples = 20;
+
+        /**
+         * 样本不足时的默认对冲延迟（毫秒）
+         */
+        private long defaultDelay = 2000;
+
+        /**
+         * 参与分位数统计的最近调用次数
+         */
+        private int window = 256;
+    }
+
+    @Data
+    public static class Adaptive {
+        /**
+         * 耗时与失败率EWMA的平滑系数，越大越偏重最近的调用
+         */
+        private double alpha = 0.2;
+
+        /**
+         * 探索比例：按该概率把请求发往期望耗时较高的后端，使其统计保持更新
+         */
+        private double exploration = 0.05;
+
+        /**
+         * 一次失败的代价（毫秒），期望耗时加上失败率乘以该值
+         */
+        private long errorPenalty = 5000;
+    }
 }
 
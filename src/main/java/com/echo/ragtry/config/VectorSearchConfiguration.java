@@ -0,0 +1,89 @@
+package com.echo.ragtry.config;
+
+import com.echo.ragtry.search.ParallelVectorScanner;
+import com.echo.ragtry.search.ScalarScoringKernel;
+import com.echo.ragtry.search.ScoringKernel;
+import com.echo.ragtry.search.VectorApiScoringKernel;
+import com.echo.ragtry.service.BulkheadExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * 向量检索配置类
+ */
+@Configuration
+@Slf4j
+public class VectorSearchConfiguration {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * 根据 rag.search.kernel 选择打分内核：auto、vector、scalar
+     */
+    @Bean
+    public ScoringKernel scoringKernel(RAGConfiguration ragConfig) {
+        String kernel = ragConfig.getSearch().getKernel();
+        ScoringKernel scoringKernel;
+
+        if (ScalarScoringKernel.NAME.equals(kernel)) {
+            scoringKernel = new ScalarScoringKernel();
+        } else if (isVectorApiAvailable()) {
+            scoringKernel = new VectorApiScoringKernel();
+        } else {
+            if (VectorApiScoringKernel.NAME.equals(kernel)) {
+                log.warn("未加载 {} 模块，无法使用Vector API内核，请使用 --add-modules {} 启动", VECTOR_MODULE, VECTOR_MODULE);
+            }
+            scoringKernel = new ScalarScoringKernel();
+        }
+
+        log.info("向量打分内核: {}，通道宽度: {} x float", scoringKernel.name(), scoringKernel.laneWidth());
+        return scoringKernel;
+    }
+
+    /**
+     * 并行分片扫描使用专用ForkJoinPool，不占用公共池
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool vectorSearchPool(RAGConfiguration ragConfig) {
+        int poolSize = ragConfig.getSearch().getParallel().getPoolSize();
+        if (poolSize <= 0) {
+            poolSize = Runtime.getRuntime().availableProcessors();
+        }
+
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = pool -> {
+            ForkJoinWorkerThread thread =
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("vector-search-" + thread.getPoolIndex());
+            return thread;
+        };
+        return new ForkJoinPool(poolSize, factory, null, false);
+    }
+
+    @Bean
+    public ParallelVectorScanner parallelVectorScanner(ForkJoinPool vectorSearchPool, RAGConfiguration ragConfig) {
+        ParallelVectorScanner scanner = new ParallelVectorScanner(
+                vectorSearchPool, ragConfig.getSearch().getParallel().getMinShardSize());
+        log.info("并行分片扫描线程数: {}，最小分片: {}", scanner.getParallelism(), scanner.getMinShardSize());
+        return scanner;
+    }
+
+    /**
+     * 混合检索两路召回使用的线程池，队列有界，满时拒绝并丢弃该路召回
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BulkheadExecutor hybridSearchExecutor(RAGConfiguration ragConfig) {
+        int poolSize = Math.max(ragConfig.getSearch().getHybrid().getPoolSize(), 1);
+        return new BulkheadExecutor("hybrid-search", poolSize, poolSize * 16);
+    }
+
+    /**
+     * 检查Vector API孵化模块是否已加载，未加载时不能触碰VectorApiScoringKernel类
+     */
+    private boolean isVectorApiAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+}
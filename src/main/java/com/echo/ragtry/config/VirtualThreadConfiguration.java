@@ -0,0 +1,36 @@
+package com.echo.ragtry.config;
+
+import com.echo.ragtry.service.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 虚拟线程配置类
+ * bulkhead.virtual-threads=true 时Tomcat为每个请求创建一个虚拟线程，
+ * 等待Ollama与Dify响应的请求不再受Tomcat工作线程数限制
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(prefix = "bulkhead", name = "virtual-threads", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnClass(ProtocolHandler.class)
+public class VirtualThreadConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (!VirtualThreads.isSupported()) {
+                log.warn("当前JDK {} 不支持虚拟线程，Tomcat使用平台线程池", System.getProperty("java.version"));
+                return;
+            }
+            log.info("Tomcat请求处理使用虚拟线程");
+            protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("tomcat-handler-"));
+        };
+    }
+}
@@ -44,6 +44,18 @@ public class CustomerServiceConstant {
         public static final String BLOCKING = "blocking";
     }
 
+    /**
+     * 流式接口推送的SSE事件类型
+     */
+    public static final class StreamEvent {
+        /** 增量文本 */
+        public static final String MESSAGE = "message";
+        /** 回答结束 */
+        public static final String DONE = "done";
+        /** 错误 */
+        public static final String ERROR = "error";
+    }
+
     /**
      * 会话状态
      */
@@ -170,6 +182,10 @@ public class CustomerServiceConstant {
         public static final String STRATEGY_DIFY_FIRST = "dify-first";
         /** 并行策略 */
         public static final String STRATEGY_PARALLEL = "parallel";
+        /** 对冲策略：主后端超过延迟阈值未响应时再调用备用后端 */
+        public static final String STRATEGY_HEDGED = "hedged";
+        /** 自适应策略：按各后端实时的耗时、失败率与进行中调用数选择期望耗时最低的后端 */
+        public static final String STRATEGY_ADAPTIVE = "adaptive";
 
         /** 服务类型：RAG */
         public static final String SERVICE_RAG = "RAG";
@@ -177,6 +193,10 @@ public class CustomerServiceConstant {
         public static final String SERVICE_DIFY = "Dify";
         /** 服务类型：关键词匹配 */
         public static final String SERVICE_KEYWORD = "Keyword";
+        /** 服务类型：常见问题直接命中 */
+        public static final String SERVICE_FAQ = "FAQ";
+        /** 服务类型：系统兜底，所有后端都没有有效响应 */
+        public static final String SERVICE_SYSTEM = "System";
     }
 }
 
@@ -0,0 +1,20 @@
+package com.echo.ragtry.controller;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 阻塞调用封装
+ * 以reactive配置运行时控制器方法在事件循环线程上执行，健康检查、知识库重载等阻塞调用需移到弹性线程池
+ */
+final class BlockingCalls {
+
+    private BlockingCalls() {
+    }
+
+    static <T> Mono<T> offload(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -1,14 +1,20 @@
 package com.echo.ragtry.controller;
 
+import com.echo.ragtry.constant.CustomerServiceConstant;
 import com.echo.ragtry.service.SmartRoutingService;
 import com.echo.ragtry.vo.ChatMessageRequest;
 import com.echo.ragtry.vo.ChatMessageResponse;
 import com.echo.ragtry.vo.Result;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.util.Map;
 
 /**
  * 智能聊天控制器
@@ -28,47 +34,100 @@ public class ChatController {
      * 根据配置策略自动选择Dify或RAG服务
      */
     @PostMapping("/send")
-    public Result<ChatMessageResponse> sendMessage(@Valid @RequestBody ChatMessageRequest request) {
+    public Mono<Result<ChatMessageResponse>> sendMessage(@Valid @RequestBody ChatMessageRequest request) {
         log.info("收到聊天请求: {}", request.getMessage());
 
-        try {
-            ChatMessageResponse response = smartRoutingService.routeMessage(request);
-            return Result.success(response);
-        } catch (Exception e) {
-            log.error("处理聊天请求失败", e);
-            return Result.error("处理聊天请求失败: " + e.getMessage());
-        }
+        return smartRoutingService.routeMessageReactive(request, "default-user")
+                .map(this::toResult)
+                .onErrorResume(e -> {
+                    log.error("处理聊天请求失败", e);
+                    return Mono.just(Result.error("处理聊天请求失败: " + e.getMessage()));
+                });
     }
 
     /**
      * 带用户ID的智能聊天接口
      */
     @PostMapping("/send/{userId}")
-    public Result<ChatMessageResponse> sendMessageWithUserId(
+    public Mono<Result<ChatMessageResponse>> sendMessageWithUserId(
             @PathVariable String userId,
             @Valid @RequestBody ChatMessageRequest request) {
         log.info("收到用户 {} 的聊天请求: {}", userId, request.getMessage());
 
-        try {
-            ChatMessageResponse response = smartRoutingService.routeMessage(request, userId);
-            return Result.success(response);
-        } catch (Exception e) {
-            log.error("处理用户 {} 的聊天请求失败", userId, e);
-            return Result.error("处理聊天请求失败: " + e.getMessage());
+        return smartRoutingService.routeMessageReactive(request, userId)
+                .map(this::toResult)
+                .onErrorResume(e -> {
+                    log.error("处理用户 {} 的聊天请求失败", userId, e);
+                    return Mono.just(Result.error("处理聊天请求失败: " + e.getMessage()));
+                });
+    }
+
+    /**
+     * 智能流式聊天接口
+     * 以Server-Sent Events逐段推送答案，每个message事件携带一段增量文本，结束时推送done事件
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChatMessageResponse>> streamMessage(@Valid @RequestBody ChatMessageRequest request) {
+        log.info("收到流式聊天请求: {}", request.getMessage());
+        return toEvents(smartRoutingService.routeMessageStream(request, "default-user"));
+    }
+
+    /**
+     * 带用户ID的智能流式聊天接口
+     */
+    @PostMapping(value = "/stream/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChatMessageResponse>> streamMessageWithUserId(
+            @PathVariable String userId,
+            @Valid @RequestBody ChatMessageRequest request) {
+        log.info("收到用户 {} 的流式聊天请求: {}", userId, request.getMessage());
+        return toEvents(smartRoutingService.routeMessageStream(request, userId));
+    }
+
+    /**
+     * 所有后端都被拒绝或不可用时，路由返回系统兜底回答，以503告知调用方本次没有得到有效回答
+     */
+    private Result<ChatMessageResponse> toResult(ChatMessageResponse response) {
+        if (CustomerServiceConstant.SmartRouting.SERVICE_SYSTEM.equals(response.getSource())) {
+            return Result.error(503, response.getAnswer());
         }
+        return Result.success(response);
+    }
+
+    private Flux<ServerSentEvent<ChatMessageResponse>> toEvents(Flux<ChatMessageResponse> chunks) {
+        return SseEvents.of(chunks, e -> {
+            ChatMessageResponse response = new ChatMessageResponse();
+            response.setAnswer("处理聊天请求失败: " + e.getMessage());
+            response.setResponseMode(CustomerServiceConstant.ResponseMode.STREAMING);
+            return response;
+        });
     }
 
     /**
      * 获取推荐的路由策略
      */
     @GetMapping("/strategy/recommend")
-    public Result<String> getRecommendedStrategy() {
+    public Mono<Result<String>> getRecommendedStrategy() {
+        return BlockingCalls.offload(() -> {
+            try {
+                String strategy = smartRoutingService.getRecommendedStrategy();
+                return Result.success(strategy);
+            } catch (Exception e) {
+                log.error("获取推荐策略失败", e);
+                return Result.error("获取推荐策略失败: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 获取各后端近期调用统计、当前对冲延迟与自适应策略优先的后端
+     */
+    @GetMapping("/strategy/stats")
+    public Result<Map<String, Object>> getBackendStats() {
         try {
-            String strategy = smartRoutingService.getRecommendedStrategy();
-            return Result.success(strategy);
+            return Result.success(smartRoutingService.getBackendStats());
         } catch (Exception e) {
-            log.error("获取推荐策略失败", e);
-            return Result.error("获取推荐策略失败: " + e.getMessage());
+            log.error("获取后端统计失败", e);
+            return Result.error("获取后端统计失败: " + e.getMessage());
         }
     }
 
@@ -76,18 +135,20 @@ public class ChatController {
      * 检查服务健康状态
      */
     @GetMapping("/health")
-    public Result<String> checkHealth() {
-        try {
-            boolean isHealthy = smartRoutingService.checkServicesHealth();
-            if (isHealthy) {
-                return Result.success("服务运行正常");
-            } else {
-                return Result.error(503, "服务不可用");
+    public Mono<Result<String>> checkHealth() {
+        return BlockingCalls.offload(() -> {
+            try {
+                boolean isHealthy = smartRoutingService.checkServicesHealth();
+                if (isHealthy) {
+                    return Result.success("服务运行正常");
+                } else {
+                    return Result.error(503, "服务不可用");
+                }
+            } catch (Exception e) {
+                log.error("健康检查失败", e);
+                return Result.error("健康检查失败: " + e.getMessage());
             }
-        } catch (Exception e) {
-            log.error("健康检查失败", e);
-            return Result.error("健康检查失败: " + e.getMessage());
-        }
+        });
     }
 }
 
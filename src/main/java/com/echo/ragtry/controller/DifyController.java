@@ -1,12 +1,17 @@
 package com.echo.ragtry.controller;
 
+import com.echo.ragtry.constant.CustomerServiceConstant;
 import com.echo.ragtry.service.DifyService;
 import com.echo.ragtry.vo.ChatMessageRequest;
 import com.echo.ragtry.vo.ChatMessageResponse;
 import com.echo.ragtry.vo.Result;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
 
@@ -27,34 +32,63 @@ public class DifyController {
      * 发送消息到Dify
      */
     @PostMapping("/chat")
-    public Result<ChatMessageResponse> sendMessage(@Valid @RequestBody ChatMessageRequest request) {
+    public Mono<Result<ChatMessageResponse>> sendMessage(@Valid @RequestBody ChatMessageRequest request) {
         log.info("直接调用Dify API: {}", request.getMessage());
 
-        try {
-            ChatMessageResponse response = difyService.sendMessage(request);
-            return Result.success(response);
-        } catch (Exception e) {
-            log.error("Dify API调用失败", e);
-            return Result.error("Dify API调用失败: " + e.getMessage());
-        }
+        return difyService.sendMessageReactive(request, "default-user")
+                .map(response -> Result.success(response))
+                .onErrorResume(e -> {
+                    log.error("Dify API调用失败", e);
+                    return Mono.just(Result.error("Dify API调用失败: " + e.getMessage()));
+                });
     }
 
     /**
      * 带用户ID的Dify聊天接口
      */
     @PostMapping("/chat/{userId}")
-    public Result<ChatMessageResponse> sendMessageWithUserId(
+    public Mono<Result<ChatMessageResponse>> sendMessageWithUserId(
             @PathVariable String userId,
             @Valid @RequestBody ChatMessageRequest request) {
         log.info("用户 {} 直接调用Dify API: {}", userId, request.getMessage());
 
-        try {
-            ChatMessageResponse response = difyService.sendMessage(request, userId);
-            return Result.success(response);
-        } catch (Exception e) {
-            log.error("用户 {} 的Dify API调用失败", userId, e);
-            return Result.error("Dify API调用失败: " + e.getMessage());
-        }
+        return difyService.sendMessageReactive(request, userId)
+                .map(response -> Result.success(response))
+                .onErrorResume(e -> {
+                    log.error("用户 {} 的Dify API调用失败", userId, e);
+                    return Mono.just(Result.error("Dify API调用失败: " + e.getMessage()));
+                });
+    }
+
+    /**
+     * Dify流式聊天接口
+     * 以Server-Sent Events转发Dify逐段生成的答案，结束时推送done事件
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChatMessageResponse>> streamMessage(@Valid @RequestBody ChatMessageRequest request) {
+        log.info("流式调用Dify API: {}", request.getMessage());
+        return toEvents(difyService.streamMessage(request, "default-user"));
+    }
+
+    /**
+     * 带用户ID的Dify流式聊天接口
+     */
+    @PostMapping(value = "/stream/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChatMessageResponse>> streamMessageWithUserId(
+            @PathVariable String userId,
+            @Valid @RequestBody ChatMessageRequest request) {
+        log.info("用户 {} 流式调用Dify API: {}", userId, request.getMessage());
+        return toEvents(difyService.streamMessage(request, userId));
+    }
+
+    private Flux<ServerSentEvent<ChatMessageResponse>> toEvents(Flux<ChatMessageResponse> chunks) {
+        return SseEvents.of(chunks, e -> {
+            ChatMessageResponse response = new ChatMessageResponse();
+            response.setAnswer("Dify API调用失败: " + e.getMessage());
+            response.setResponseMode(CustomerServiceConstant.ResponseMode.STREAMING);
+            response.setSource(CustomerServiceConstant.SmartRouting.SERVICE_DIFY);
+            return response;
+        });
     }
 
     /**
@@ -91,18 +125,20 @@ public class DifyController {
      * Dify服务健康检查
      */
     @GetMapping("/health")
-    public Result<String> checkHealth() {
-        try {
-            boolean isHealthy = difyService.checkHealth();
-            if (isHealthy) {
-                return Result.success("Dify服务运行正常");
-            } else {
-                return Result.error(503, "Dify服务不可用");
+    public Mono<Result<String>> checkHealth() {
+        return BlockingCalls.offload(() -> {
+            try {
+                boolean isHealthy = difyService.checkHealth();
+                if (isHealthy) {
+                    return Result.success("Dify服务运行正常");
+                } else {
+                    return Result.error(503, "Dify服务不可用");
+                }
+            } catch (Exception e) {
+                log.error("Dify健康检查失败", e);
+                return Result.error("Dify健康检查失败: " + e.getMessage());
             }
-        } catch (Exception e) {
-            log.error("Dify健康检查失败", e);
-            return Result.error("Dify健康检查失败: " + e.getMessage());
-        }
+        });
     }
 }
 
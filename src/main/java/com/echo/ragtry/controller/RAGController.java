@@ -6,9 +6,14 @@ import com.echo.ragtry.vo.RAGResponse;
 import com.echo.ragtry.vo.Result;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.util.Map;
 
 /**
  * RAG控制器
@@ -27,50 +32,98 @@ public class RAGController {
      * RAG问答接口
      */
     @PostMapping("/query")
-    public Result<RAGResponse> query(@Valid @RequestBody RAGRequest request) {
+    public Mono<Result<RAGResponse>> query(@Valid @RequestBody RAGRequest request) {
         log.info("收到RAG查询: {}", request.getQuestion());
 
         long startTime = System.currentTimeMillis();
 
-        try {
-            String answer = ragService.query(request.getQuestion());
-            long responseTime = System.currentTimeMillis() - startTime;
+        return ragService.queryReactive(request.getQuestion())
+                .map(response -> Result.success(response))
+                .onErrorResume(e -> {
+                    log.error("RAG查询失败", e);
 
-            RAGResponse response = RAGResponse.builder()
-                    .answer(answer)
-                    .source("RAG")
-                    .responseTime(responseTime)
-                    .status("success")
-                    .build();
+                    RAGResponse response = RAGResponse.builder()
+                            .answer("抱歉，查询过程中出现错误，请稍后再试。")
+                            .source("RAG")
+                            .responseTime(System.currentTimeMillis() - startTime)
+                            .status("error")
+                            .build();
 
-            return Result.success(response);
-        } catch (Exception e) {
-            log.error("RAG查询失败", e);
+                    return Mono.just(Result.success(response));
+                });
+    }
+
+    /**
+     * RAG流式问答接口
+     * 以Server-Sent Events逐段推送生成的答案，每个message事件携带一段增量文本，结束时推送done事件
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<RAGResponse>> stream(@Valid @RequestBody RAGRequest request) {
+        log.info("收到RAG流式查询: {}", request.getQuestion());
+        return toEvents(ragService.streamQuery(request.getQuestion()));
+    }
 
-            RAGResponse response = RAGResponse.builder()
-                    .answer("抱歉，查询过程中出现错误，请稍后再试。")
-                    .source("RAG")
-                    .responseTime(System.currentTimeMillis() - startTime)
-                    .status("error")
-                    .build();
+    /**
+     * RAG流式问答接口，便于浏览器EventSource直接调用
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<RAGResponse>> stream(@RequestParam String question) {
+        log.info("收到RAG流式查询: {}", question);
+        return toEvents(ragService.streamQuery(question));
+    }
 
-            return Result.success(response);
-        }
+    private Flux<ServerSentEvent<RAGResponse>> toEvents(Flux<RAGResponse> chunks) {
+        return SseEvents.of(chunks, e -> RAGResponse.builder()
+                .answer("抱歉，查询过程中出现错误，请稍后再试。")
+                .source("RAG")
+                .status("error")
+                .build());
     }
 
     /**
      * 重新加载知识库
      */
     @PostMapping("/reload")
-    public Result<String> reloadKnowledge() {
+    public Mono<Result<String>> reloadKnowledge() {
         log.info("重新加载RAG知识库");
 
+        return BlockingCalls.offload(() -> {
+            try {
+                ragService.reloadKnowledge();
+                return Result.success("已开始重新加载知识库，完成后自动切换");
+            } catch (Exception e) {
+                log.error("重新加载知识库失败", e);
+                return Result.error("重新加载知识库失败: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 评估HNSW检索召回率
+     */
+    @GetMapping("/recall")
+    public Mono<Result<Double>> evaluateRecall(@RequestParam(defaultValue = "5") int k,
+                                               @RequestParam(defaultValue = "50") int samples) {
+        return BlockingCalls.offload(() -> {
+            try {
+                return Result.success(ragService.evaluateRecall(k, samples));
+            } catch (Exception e) {
+                log.error("评估召回率失败", e);
+                return Result.error("评估召回率失败: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * RAG服务运行统计
+     */
+    @GetMapping("/stats")
+    public Result<Map<String, Object>> getStats() {
         try {
-            ragService.reloadKnowledge();
-            return Result.success("知识库重新加载成功");
+            return Result.success(ragService.getStats());
         } catch (Exception e) {
-            log.error("重新加载知识库失败", e);
-            return Result.error("重新加载知识库失败: " + e.getMessage());
+            log.error("获取RAG统计失败", e);
+            return Result.error("获取RAG统计失败: " + e.getMessage());
         }
     }
 
@@ -78,18 +131,20 @@ public class RAGController {
      * RAG服务健康检查
      */
     @GetMapping("/health")
-    public Result<String> checkHealth() {
-        try {
-            boolean isHealthy = ragService.checkHealth();
-            if (isHealthy) {
-                return Result.success("RAG服务运行正常");
-            } else {
-                return Result.error(503, "RAG服务不可用");
+    public Mono<Result<String>> checkHealth() {
+        return BlockingCalls.offload(() -> {
+            try {
+                boolean isHealthy = ragService.checkHealth();
+                if (isHealthy) {
+                    return Result.success("RAG服务运行正常");
+                } else {
+                    return Result.error(503, "RAG服务不可用");
+                }
+            } catch (Exception e) {
+                log.error("RAG健康检查失败", e);
+                return Result.error("RAG健康检查失败: " + e.getMessage());
             }
-        } catch (Exception e) {
-            log.error("RAG健康检查失败", e);
-            return Result.error("RAG健康检查失败: " + e.getMessage());
-        }
+        });
     }
 }
 
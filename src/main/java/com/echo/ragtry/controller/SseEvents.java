@@ -0,0 +1,32 @@
+package com.echo.ragtry.controller;
+
+import com.echo.ragtry.constant.CustomerServiceConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * 流式接口的SSE事件封装
+ * 每段增量内容推送一个message事件，正常结束时推送done事件，出错时推送error事件后结束
+ */
+@Slf4j
+final class SseEvents {
+
+    private SseEvents() {
+    }
+
+    static <T> Flux<ServerSentEvent<T>> of(Flux<T> chunks, Function<Throwable, T> onError) {
+        return chunks
+                .map(chunk -> ServerSentEvent.builder(chunk).event(CustomerServiceConstant.StreamEvent.MESSAGE).build())
+                .concatWith(Mono.fromSupplier(() -> ServerSentEvent.<T>builder()
+                        .event(CustomerServiceConstant.StreamEvent.DONE).build()))
+                .onErrorResume(e -> {
+                    log.error("流式响应失败", e);
+                    return Flux.just(ServerSentEvent.builder(onError.apply(e))
+                            .event(CustomerServiceConstant.StreamEvent.ERROR).build());
+                });
+    }
+}
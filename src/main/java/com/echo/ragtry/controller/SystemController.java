@@ -3,6 +3,7 @@ package com.echo.ragtry.controller;
 import com.echo.ragtry.config.DifyApiConfiguration;
 import com.echo.ragtry.config.RAGConfiguration;
 import com.echo.ragtry.config.SmartRoutingConfiguration;
+import com.echo.ragtry.service.BulkheadExecutor;
 import com.echo.ragtry.service.DifyService;
 import com.echo.ragtry.service.EnhancedRAGService;
 import com.echo.ragtry.service.SmartRoutingService;
@@ -10,8 +11,11 @@ import com.echo.ragtry.vo.Result;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -42,6 +46,9 @@ public class SystemController {
     @Autowired
     private SmartRoutingConfiguration routingConfig;
 
+    @Autowired
+    private List<BulkheadExecutor> bulkheads;
+
     /**
      * 系统信息
      */
@@ -77,40 +84,42 @@ public class SystemController {
      * 综合健康检查
      */
     @GetMapping("/health")
-    public Result<Map<String, Object>> checkSystemHealth() {
-        Map<String, Object> health = new HashMap<>();
-
-        boolean difyHealth = false;
-        boolean ragHealth = false;
-        boolean overallHealth = false;
-
-        try {
-            difyHealth = difyService.checkHealth();
-        } catch (Exception e) {
-            log.warn("Dify健康检查异常", e);
-        }
-
-        try {
-            ragHealth = ragService.checkHealth();
-        } catch (Exception e) {
-            log.warn("RAG健康检查异常", e);
-        }
-
-        overallHealth = difyHealth || ragHealth;
-
-        health.put("overall", overallHealth);
-        health.put("services", Map.of(
-                "dify", difyHealth,
-                "rag", ragHealth));
-        health.put("recommendedStrategy", routingService.getRecommendedStrategy());
-
-        if (overallHealth) {
-            return Result.success(health);
-        } else {
-            Result<Map<String, Object>> result = Result.error(503, "系统服务不可用");
-            result.setData(health);
-            return result;
-        }
+    public Mono<Result<Map<String, Object>>> checkSystemHealth() {
+        return BlockingCalls.offload(() -> {
+            Map<String, Object> health = new HashMap<>();
+
+            boolean difyHealth = false;
+            boolean ragHealth = false;
+            boolean overallHealth = false;
+
+            try {
+                difyHealth = difyService.checkHealth();
+            } catch (Exception e) {
+                log.warn("Dify健康检查异常", e);
+            }
+
+            try {
+                ragHealth = ragService.checkHealth();
+            } catch (Exception e) {
+                log.warn("RAG健康检查异常", e);
+            }
+
+            overallHealth = difyHealth || ragHealth;
+
+            health.put("overall", overallHealth);
+            health.put("services", Map.of(
+                    "dify", difyHealth,
+                    "rag", ragHealth));
+            health.put("recommendedStrategy", routingService.getRecommendedStrategy());
+
+            if (overallHealth) {
+                return Result.success(health);
+            } else {
+                Result<Map<String, Object>> result = Result.error(503, "系统服务不可用");
+                result.setData(health);
+                return result;
+            }
+        });
     }
 
     /**
@@ -136,47 +145,61 @@ public class SystemController {
     }
 
     /**
-     * 快速测试接口
+     * 舱壁线程池运行指标
      */
-    @PostMapping("/test")
-    public Result<Map<String, Object>> quickTest(@RequestParam(defaultValue = "你好") String message) {
-        log.info("执行快速测试，消息: {}", message);
-
-        Map<String, Object> testResults = new HashMap<>();
-
-        // 测试Dify
-        try {
-            long startTime = System.currentTimeMillis();
-            boolean difyResult = difyService.checkHealth();
-            long difyTime = System.currentTimeMillis() - startTime;
-
-            testResults.put("dify", Map.of(
-                    "available", difyResult,
-                    "responseTime", difyTime + "ms"));
-        } catch (Exception e) {
-            testResults.put("dify", Map.of(
-                    "available", false,
-                    "error", e.getMessage()));
-        }
-
-        // 测试RAG
-        try {
-            long startTime = System.currentTimeMillis();
-            String ragAnswer = ragService.query(message);
-            long ragTime = System.currentTimeMillis() - startTime;
-
-            testResults.put("rag", Map.of(
-                    "available", true,
-                    "responseTime", ragTime + "ms",
-                    "answer",
-                    ragAnswer != null ? ragAnswer.substring(0, Math.min(100, ragAnswer.length())) + "..." : "无回答"));
-        } catch (Exception e) {
-            testResults.put("rag", Map.of(
-                    "available", false,
-                    "error", e.getMessage()));
+    @GetMapping("/bulkheads")
+    public Result<Map<String, Object>> getBulkheadMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (BulkheadExecutor bulkhead : bulkheads) {
+            metrics.put(bulkhead.getName(), bulkhead.getMetrics());
         }
+        return Result.success(metrics);
+    }
 
-        return Result.success(testResults);
+    /**
+     * 快速测试接口
+     */
+    @PostMapping("/test")
+    public Mono<Result<Map<String, Object>>> quickTest(@RequestParam(defaultValue = "你好") String message) {
+        return BlockingCalls.offload(() -> {
+            log.info("执行快速测试，消息: {}", message);
+
+            Map<String, Object> testResults = new HashMap<>();
+
+            // 测试Dify
+            try {
+                long startTime = System.currentTimeMillis();
+                boolean difyResult = difyService.checkHealth();
+                long difyTime = System.currentTimeMillis() - startTime;
+
+                testResults.put("dify", Map.of(
+                        "available", difyResult,
+                        "responseTime", difyTime + "ms"));
+            } catch (Exception e) {
+                testResults.put("dify", Map.of(
+                        "available", false,
+                        "error", e.getMessage()));
+            }
+
+            // 测试RAG
+            try {
+                long startTime = System.currentTimeMillis();
+                String ragAnswer = ragService.query(message);
+                long ragTime = System.currentTimeMillis() - startTime;
+
+                testResults.put("rag", Map.of(
+                        "available", true,
+                        "responseTime", ragTime + "ms",
+                        "answer",
+                        ragAnswer != null ? ragAnswer.substring(0, Math.min(100, ragAnswer.length())) + "..." : "无回答"));
+            } catch (Exception e) {
+                testResults.put("rag", Map.of(
+                        "available", false,
+                        "error", e.getMessage()));
+            }
+
+            return Result.success(testResults);
+        });
     }
 
     /**
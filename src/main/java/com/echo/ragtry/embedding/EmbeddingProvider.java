@@ -0,0 +1,24 @@
+package com.echo.ragtry.embedding;
+
+import java.util.List;
+
+/**
+ * 文本向量化提供方
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * 模型标识，写入向量持久化文件，切换模型后旧向量不会被复用
+     */
+    String getModelName();
+
+    /**
+     * 向量化单条文本，失败时返回null
+     */
+    float[] embed(String text);
+
+    /**
+     * 批量向量化，返回与输入一一对应的向量，失败时抛出异常
+     */
+    List<float[]> embedAll(List<String> texts);
+}
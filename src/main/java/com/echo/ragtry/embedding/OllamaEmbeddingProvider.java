@@ -0,0 +1,106 @@
+package com.echo.ragtry.embedding;
+
+import com.echo.ragtry.config.RAGConfiguration;
+import com.echo.ragtry.search.VectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 通过Ollama HTTP接口向量化
+ */
+@Slf4j
+public class OllamaEmbeddingProvider implements EmbeddingProvider {
+
+    public static final String NAME = "ollama";
+
+    private final RAGConfiguration.Ollama ollama;
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    public OllamaEmbeddingProvider(RAGConfiguration.Ollama ollama) {
+        this.ollama = ollama;
+    }
+
+    @Override
+    public String getModelName() {
+        return ollama.getEmbeddingModel();
+    }
+
+    @Override
+    public float[] embed(String text) {
+        try {
+            String url = ollama.getBaseUrl() + "/api/embeddings";
+
+            Map<String, Object> requestBody = new HashMap<>();
+            requestBody.put("model", ollama.getEmbeddingModel());
+            requestBody.put("prompt", text);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+
+            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+            ResponseEntity<Map> response = restTemplate.postForEntity(url, request, Map.class);
+
+            if (response.getBody() != null && response.getBody().get("embedding") != null) {
+                List<Number> embedding = (List<Number>) response.getBody().get("embedding");
+                return VectorStore.toFloatArray(embedding);
+            }
+
+            return null;
+        } catch (Exception e) {
+            log.error("获取embedding失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 使用Ollama的 /api/embed 接口一次提交多条文本，旧版本Ollama不支持时逐条调用
+     */
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        String url = ollama.getBaseUrl() + "/api/embed";
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", ollama.getEmbeddingModel());
+        requestBody.put("input", texts);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<Map> response;
+        try {
+            response = restTemplate.postForEntity(url, new HttpEntity<>(requestBody, headers), Map.class);
+        } catch (HttpClientErrorException.NotFound e) {
+            log.debug("Ollama不支持 /api/embed，改为逐条向量化");
+            List<float[]> embeddings = new ArrayList<>(texts.size());
+            for (String text : texts) {
+                float[] embedding = embed(text);
+                if (embedding == null) {
+                    throw new IllegalStateException("获取embedding失败");
+                }
+                embeddings.add(embedding);
+            }
+            return embeddings;
+        }
+
+        if (response.getBody() == null || response.getBody().get("embeddings") == null) {
+            throw new IllegalStateException("Ollama未返回embeddings");
+        }
+
+        List<List<Number>> embeddings = (List<List<Number>>) response.getBody().get("embeddings");
+        List<float[]> vectors = new ArrayList<>(embeddings.size());
+        for (List<Number> embedding : embeddings) {
+            vectors.add(VectorStore.toFloatArray(embedding));
+        }
+        return vectors;
+    }
+}
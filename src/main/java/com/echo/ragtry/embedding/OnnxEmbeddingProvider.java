@@ -0,0 +1,73 @@
+package com.echo.ragtry.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 进程内ONNX向量化，使用内置的all-MiniLM-L6-v2模型（384维）
+ * 无需模型服务，推理线程数固定，超出的批次在线程池队列中等待
+ */
+@Slf4j
+public class OnnxEmbeddingProvider implements EmbeddingProvider {
+
+    public static final String NAME = "onnx";
+
+    private static final String MODEL_NAME = "onnx/all-minilm-l6-v2";
+
+    private final ExecutorService executor;
+    private final AllMiniLmL6V2EmbeddingModel model;
+    private final int batchSize;
+
+    /**
+     * @param threads   推理线程数
+     * @param batchSize 单次提交给模型的最大条数
+     */
+    public OnnxEmbeddingProvider(int threads, int batchSize) {
+        this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("onnx-embedding-"));
+        this.model = new AllMiniLmL6V2EmbeddingModel(executor);
+        this.batchSize = Math.max(batchSize, 1);
+        log.info("进程内向量化模型已加载: {}，维度: {}，推理线程数: {}", MODEL_NAME, model.dimension(), threads);
+    }
+
+    @Override
+    public String getModelName() {
+        return MODEL_NAME;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        try {
+            return model.embed(text).content().vector();
+        } catch (Exception e) {
+            log.error("获取embedding失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (int from = 0; from < texts.size(); from += batchSize) {
+            List<TextSegment> segments = new ArrayList<>();
+            for (String text : texts.subList(from, Math.min(from + batchSize, texts.size()))) {
+                segments.add(TextSegment.from(text));
+            }
+            for (Embedding embedding : model.embedAll(segments).content()) {
+                vectors.add(embedding.vector());
+            }
+        }
+        return vectors;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
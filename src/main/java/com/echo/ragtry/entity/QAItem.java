@@ -31,5 +31,14 @@ public class QAItem {
      * 知识分类
      */
     private String category;
+
+    /**
+     * 来源文件（相对知识库根目录的路径）
+     */
+    private String source;
+
+    public QAItem(String id, String question, String answer, String category) {
+        this(id, question, answer, category, null);
+    }
 }
 
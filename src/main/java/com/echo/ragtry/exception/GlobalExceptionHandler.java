@@ -9,6 +9,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
@@ -49,6 +50,22 @@ public class GlobalExceptionHandler {
         return Result.error(400, message);
     }
 
+    /**
+     * 处理参数校验异常（以reactive配置运行时）
+     */
+    @ExceptionHandler(WebExchangeBindException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Result<String> handleWebExchangeBindException(WebExchangeBindException e) {
+        List<String> errors = e.getFieldErrors()
+                .stream()
+                .map(FieldError::getDefaultMessage)
+                .collect(Collectors.toList());
+
+        String message = "参数校验失败: " + String.join(", ", errors);
+        log.warn(message);
+        return Result.error(400, message);
+    }
+
     /**
      * 处理绑定异常
      */
@@ -0,0 +1,276 @@
+package com.echo.ragtry.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * BM25倒排索引
+ * 分词见 {@link TextTokenizer}，倒排表以原始int数组存放文档行号与词频，
+ * 构建后不可变，可被任意线程并发检索
+ *
+ * 重新构建时按内容哈希复用上一版索引的分词结果，只对新增或修改的文档分词
+ */
+public final class Bm25Index {
+
+    private final String[] ids;
+    private final long[] hashes;
+    private final Map<String, Integer> termIds;
+    private final float[] idf;
+    private final int[][] postingRows;
+    private final int[][] postingFreqs;
+
+    /**
+     * 每个文档的长度归一化项 k1 * (1 - b + b * dl / avgdl)
+     */
+    private final float[] lengthNorms;
+    private final float k1;
+
+    /**
+     * 内容哈希到分词结果，供下一次构建复用
+     */
+    private final Map<Long, DocTerms> analyzed;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private Bm25Index(Builder builder) {
+        int size = builder.ids.size();
+        this.ids = builder.ids.toArray(new String[0]);
+        this.hashes = new long[size];
+        for (int row = 0; row < size; row++) {
+            hashes[row] = builder.hashes.get(row);
+        }
+        this.k1 = builder.k1;
+        this.analyzed = builder.analyzed;
+
+        // 统计文档频率并分配倒排表
+        this.termIds = new HashMap<>();
+        List<int[]> docFreqs = new ArrayList<>();
+        long totalLength = 0;
+        for (DocTerms doc : builder.docs) {
+            totalLength += doc.length;
+            for (String term : doc.terms) {
+                Integer termId = termIds.get(term);
+                if (termId == null) {
+                    termIds.put(term, docFreqs.size());
+                    docFreqs.add(new int[]{1});
+                } else {
+                    docFreqs.get(termId)[0]++;
+                }
+            }
+        }
+
+        int terms = docFreqs.size();
+        this.idf = new float[terms];
+        this.postingRows = new int[terms][];
+        this.postingFreqs = new int[terms][];
+        for (int t = 0; t < terms; t++) {
+            int df = docFreqs.get(t)[0];
+            idf[t] = (float) Math.log(1.0 + (size - df + 0.5) / (df + 0.5));
+            postingRows[t] = new int[df];
+            postingFreqs[t] = new int[df];
+        }
+
+        // 按行号顺序填充，倒排表天然有序
+        int[] fill = new int[terms];
+        float avgLength = size > 0 ? (float) totalLength / size : 0f;
+        this.lengthNorms = new float[size];
+        for (int row = 0; row < size; row++) {
+            DocTerms doc = builder.docs.get(row);
+            for (int i = 0; i < doc.terms.length; i++) {
+                int termId = termIds.get(doc.terms[i]);
+                int slot = fill[termId]++;
+                postingRows[termId][slot] = row;
+                postingFreqs[termId][slot] = doc.freqs[i];
+            }
+            float relative = avgLength > 0 ? doc.length / avgLength : 0f;
+            lengthNorms[row] = k1 * (1 - builder.b + builder.b * relative);
+        }
+    }
+
+    /**
+     * @param previous 上一版索引，其分词结果按内容哈希复用，可为null
+     */
+    public static Builder builder(double k1, double b, Bm25Index previous) {
+        return new Builder((float) k1, (float) b, previous);
+    }
+
+    /**
+     * 检索BM25得分最高的k个文档，按得分降序排列
+     *
+     * @param minMatchRatio 文档至少需命中的查询词比例
+     */
+    public List<SearchHit> search(String query, int k, double minMatchRatio) {
+        Set<String> queryTerms = new LinkedHashSet<>(TextTokenizer.tokenize(query));
+        if (queryTerms.isEmpty() || ids.length == 0) {
+            return new ArrayList<>();
+        }
+        int required = Math.max(1, (int) Math.ceil(minMatchRatio * queryTerms.size()));
+
+        Scratch scratch = SCRATCH.get();
+        scratch.ensureCapacity(ids.length);
+        float[] scores = scratch.scores;
+        short[] matched = scratch.matched;
+        int[] touched = scratch.touched;
+        int touchedCount = 0;
+
+        // 线程被中断时停止累加，仍需清零已写入的线程本地计分数组后再抛出
+        Thread owner = Thread.currentThread();
+        boolean cancelled = false;
+        for (String term : queryTerms) {
+            if (owner.isInterrupted()) {
+                cancelled = true;
+                break;
+            }
+            Integer termId = termIds.get(term);
+            if (termId == null) {
+                continue;
+            }
+            float weight = idf[termId];
+            int[] rows = postingRows[termId];
+            int[] freqs = postingFreqs[termId];
+            for (int i = 0; i < rows.length; i++) {
+                int row = rows[i];
+                if (matched[row] == 0) {
+                    touched[touchedCount++] = row;
+                }
+                matched[row]++;
+                int tf = freqs[i];
+                scores[row] += weight * tf * (k1 + 1) / (tf + lengthNorms[row]);
+            }
+        }
+
+        TopKSelector selector = new TopKSelector(k, 0.0);
+        for (int i = 0; i < touchedCount; i++) {
+            int row = touched[i];
+            if (!cancelled && matched[row] >= required) {
+                selector.offer(row, scores[row]);
+            }
+            scores[row] = 0f;
+            matched[row] = 0;
+        }
+        if (cancelled) {
+            SearchCancellation.check(owner);
+        }
+        return selector.toHits();
+    }
+
+    public String idAt(int row) {
+        return ids[row];
+    }
+
+    /**
+     * 获取指定行的内容哈希
+     */
+    public long hashAt(int row) {
+        return hashes[row];
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int termCount() {
+        return idf.length;
+    }
+
+    /**
+     * 逐条写入文档后构建不可变索引
+     */
+    public static final class Builder {
+        private final float k1;
+        private final float b;
+        private final Map<Long, DocTerms> previous;
+        private final Map<Long, DocTerms> analyzed = new HashMap<>();
+        private final List<String> ids = new ArrayList<>();
+        private final List<Long> hashes = new ArrayList<>();
+        private final List<DocTerms> docs = new ArrayList<>();
+        private int reused;
+
+        private Builder(float k1, float b, Bm25Index previous) {
+            this.k1 = k1;
+            this.b = b;
+            this.previous = previous != null ? previous.analyzed : new HashMap<>();
+        }
+
+        public Builder add(String id, long contentHash, String text) {
+            DocTerms doc = analyzed.get(contentHash);
+            if (doc == null) {
+                doc = previous.get(contentHash);
+                if (doc != null) {
+                    reused++;
+                } else {
+                    doc = DocTerms.of(TextTokenizer.tokenize(text));
+                }
+                analyzed.put(contentHash, doc);
+            }
+            ids.add(id);
+            hashes.add(contentHash);
+            docs.add(doc);
+            return this;
+        }
+
+        /**
+         * 复用上一版分词结果的文档数
+         */
+        public int getReused() {
+            return reused;
+        }
+
+        public Bm25Index build() {
+            return new Bm25Index(this);
+        }
+    }
+
+    /**
+     * 单个文档的去重词项与词频
+     */
+    private static final class DocTerms {
+        final String[] terms;
+        final int[] freqs;
+        final int length;
+
+        private DocTerms(String[] terms, int[] freqs, int length) {
+            this.terms = terms;
+            this.freqs = freqs;
+            this.length = length;
+        }
+
+        static DocTerms of(List<String> tokens) {
+            Map<String, int[]> counts = new LinkedHashMap<>();
+            for (String token : tokens) {
+                counts.computeIfAbsent(token, t -> new int[1])[0]++;
+            }
+            String[] terms = new String[counts.size()];
+            int[] freqs = new int[counts.size()];
+            int i = 0;
+            for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+                terms[i] = entry.getKey();
+                freqs[i++] = entry.getValue()[0];
+            }
+            return new DocTerms(terms, freqs, tokens.size());
+        }
+    }
+
+    /**
+     * 按线程复用的打分数组，检索结束时只清零被触及的行
+     */
+    private static final class Scratch {
+        float[] scores = new float[0];
+        short[] matched = new short[0];
+        int[] touched = new int[0];
+
+        void ensureCapacity(int size) {
+            if (scores.length < size) {
+                int capacity = Math.max(size, scores.length * 2);
+                scores = new float[capacity];
+                matched = new short[capacity];
+                touched = new int[capacity];
+            }
+        }
+    }
+}
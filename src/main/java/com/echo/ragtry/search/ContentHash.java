@@ -0,0 +1,28 @@
+package com.echo.ragtry.search;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 知识内容哈希
+ * 取问题与答案SHA-256的前8字节，用于判断向量是否需要重新计算
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    public static long of(String question, String answer) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(question.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(answer.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM不支持SHA-256", e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.echo.ragtry.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * 知识库向量持久化文件
+ * 启动时通过内存映射读取，按内容哈希查找已计算过的向量
+ *
+ * 文件格式（小端序）：
+ * magic(int) | version(int) | 模型名长度(short) + UTF-8模型名 | 维度(int) | 条数(int)
+ * | 按升序排列的内容哈希(long * 条数) | 归一化向量(float * 维度 * 条数)
+ */
+public final class EmbeddingFile {
+
+    private static final int MAGIC = 0x52414745;
+    private static final int VERSION = 1;
+
+    private final String model;
+    private final int dimension;
+    private final int count;
+    private final LongBuffer hashes;
+    private final FloatBuffer vectors;
+
+    private EmbeddingFile(String model, int dimension, int count, LongBuffer hashes, FloatBuffer vectors) {
+        this.model = model;
+        this.dimension = dimension;
+        this.count = count;
+        this.hashes = hashes;
+        this.vectors = vectors;
+    }
+
+    /**
+     * 以只读方式映射向量文件
+     */
+    public static EmbeddingFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("不是有效的向量文件: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("不支持的向量文件版本: " + version);
+            }
+
+            byte[] modelBytes = new byte[buffer.getShort()];
+            buffer.get(modelBytes);
+            int dimension = buffer.getInt();
+            int count = buffer.getInt();
+
+            long expected = (long) buffer.position() + (long) count * Long.BYTES
+                    + (long) count * dimension * Float.BYTES;
+            if (dimension <= 0 || count < 0 || expected != channel.size()) {
+                throw new IOException("向量文件已损坏: " + path);
+            }
+
+            LongBuffer hashes = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            hashes.limit(count);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            FloatBuffer vectors = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+
+            return new EmbeddingFile(new String(modelBytes, StandardCharsets.UTF_8), dimension, count, hashes, vectors);
+        }
+    }
+
+    /**
+     * 将索引中的全部向量写入文件
+     * 先写临时文件再原子替换，写入过程中崩溃不会破坏旧文件
+     */
+    public static void write(Path path, String model, VectorIndex index) throws IOException {
+        int rows = index.size();
+        int dimension = index.dimension();
+        Integer[] order = new Integer[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(index::hashAt));
+
+        // 内容相同的条目只保留一份
+        int unique = 0;
+        for (int i = 0; i < rows; i++) {
+            if (i == 0 || index.hashAt(order[i]) != index.hashAt(order[i - 1])) {
+                order[unique++] = order[i];
+            }
+        }
+
+        byte[] modelBytes = model.getBytes(StandardCharsets.UTF_8);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(18 + modelBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putShort((short) modelBytes.length).put(modelBytes)
+                    .putInt(dimension).putInt(unique);
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer hashBlock = ByteBuffer.allocate(unique * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < unique; i++) {
+                hashBlock.putLong(index.hashAt(order[i]));
+            }
+            hashBlock.flip();
+            writeFully(channel, hashBlock);
+
+            ByteBuffer row = ByteBuffer.allocate(dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            float[] vector = new float[dimension];
+            for (int i = 0; i < unique; i++) {
+                index.copyVector(order[i], vector);
+                row.clear();
+                row.asFloatBuffer().put(vector);
+                writeFully(channel, row);
+            }
+            channel.force(false);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 按内容哈希查找向量，未找到返回null
+     */
+    public float[] find(long hash) {
+        int row = indexOf(hash);
+        if (row < 0) {
+            return null;
+        }
+        float[] vector = new float[dimension];
+        vectors.get(row * dimension, vector);
+        return vector;
+    }
+
+    /**
+     * 文件中的内容哈希是否与给定集合完全一致
+     */
+    public boolean containsExactly(Set<Long> expected) {
+        if (expected.size() != count) {
+            return false;
+        }
+        for (long hash : expected) {
+            if (indexOf(hash) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(long hash) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = hashes.get(mid);
+            if (value < hash) {
+                low = mid + 1;
+            } else if (value > hash) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.echo.ragtry.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 常见问题快速匹配
+ * 用知识库问题构建Aho-Corasick自动机，一次扫描即可判断查询是否与某个问题完全相同，
+ * 或完整包含某个问题；问题与查询都先经过 {@link #normalize} 处理
+ *
+ * 构建后不可变，可被任意线程并发使用
+ */
+public final class FaqMatcher {
+
+    private final String[] ids;
+    private final int[] lengths;
+
+    /**
+     * 每个状态的出边，按字符升序排列，用二分查找转移
+     */
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+
+    /**
+     * 在该状态结束的最长问题，沿失败链继承，无则为-1
+     */
+    private final int[] output;
+
+    private final int minContainedLength;
+
+    /**
+     * @param minContainedLength 查询包含问题而非完全相同时，问题规范化后的最小长度，
+     *                           避免过短的问题误命中长句
+     */
+    public FaqMatcher(List<String> ids, List<String> questions, int minContainedLength) {
+        this.minContainedLength = minContainedLength;
+
+        List<Map<Character, Integer>> edges = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        List<String> patternIds = new ArrayList<>();
+        List<Integer> patternLengths = new ArrayList<>();
+        edges.add(new HashMap<>());
+        terminal.add(-1);
+
+        for (int i = 0; i < questions.size(); i++) {
+            String pattern = normalize(questions.get(i));
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int j = 0; j < pattern.length(); j++) {
+                Integer next = edges.get(state).get(pattern.charAt(j));
+                if (next == null) {
+                    next = edges.size();
+                    edges.get(state).put(pattern.charAt(j), next);
+                    edges.add(new HashMap<>());
+                    terminal.add(-1);
+                }
+                state = next;
+            }
+            // 规范化后相同的问题只保留第一条
+            if (terminal.get(state) < 0) {
+                terminal.set(state, patternIds.size());
+                patternIds.add(ids.get(i));
+                patternLengths.add(pattern.length());
+            }
+        }
+
+        int states = edges.size();
+        this.ids = patternIds.toArray(new String[0]);
+        this.lengths = new int[patternLengths.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = patternLengths.get(i);
+        }
+
+        this.edgeChars = new char[states][];
+        this.edgeTargets = new int[states][];
+        for (int s = 0; s < states; s++) {
+            Character[] keys = edges.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(keys);
+            edgeChars[s] = new char[keys.length];
+            edgeTargets[s] = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                edgeChars[s][i] = keys[i];
+                edgeTargets[s][i] = edges.get(s).get(keys[i]);
+            }
+        }
+
+        // 按层序计算失败链与输出
+        this.fail = new int[states];
+        this.output = new int[states];
+        output[0] = -1;
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int child : edgeTargets[0]) {
+            fail[child] = 0;
+            output[child] = terminal.get(child);
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int i = 0; i < edgeChars[state].length; i++) {
+                int child = edgeTargets[state][i];
+                int f = fail[state];
+                int target;
+                while ((target = child(f, edgeChars[state][i])) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = target >= 0 ? target : 0;
+                output[child] = terminal.get(child) >= 0 ? terminal.get(child) : output[fail[child]];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * 查找与查询完全相同或被查询完整包含的最长问题，返回其知识ID，未命中时返回null
+     */
+    public String match(String query) {
+        String text = normalize(query);
+        int state = 0;
+        int best = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = child(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next >= 0 ? next : 0;
+
+            int found = output[state];
+            if (found >= 0 && (best < 0 || lengths[found] > lengths[best])) {
+                best = found;
+            }
+        }
+
+        if (best < 0) {
+            return null;
+        }
+        if (lengths[best] == text.length() || lengths[best] >= minContainedLength) {
+            return ids[best];
+        }
+        return null;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * 只保留字母和数字并统一小写，忽略空白与标点差异
+     */
+    public static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private int child(int state, char c) {
+        int i = Arrays.binarySearch(edgeChars[state], c);
+        return i >= 0 ? edgeTargets[state][i] : -1;
+    }
+}
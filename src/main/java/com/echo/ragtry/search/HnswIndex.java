@@ -0,0 +1,351 @@
+package com.echo.ragtry.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * HNSW近似最近邻索引
+ * 以VectorStore的行号为节点构建分层小世界图，支持随向量写入增量插入
+ *
+ * 插入需按行号顺序串行调用；检索不加锁：邻居表写时复制，
+ * 读取方只会看到完整的旧表或新表，并忽略尚未发布的节点
+ */
+public class HnswIndex {
+
+    private final VectorStore store;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+
+    private volatile Node[] nodes = new Node[0];
+    private volatile Entry entry;
+
+    /**
+     * 已完成插入的节点数，行号小于该值的节点均已完整链接
+     */
+    private volatile int count;
+
+    private static final ThreadLocal<VisitedSet> VISITED = ThreadLocal.withInitial(VisitedSet::new);
+
+    public HnswIndex(VectorStore store, int m, int efConstruction) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW参数M不能小于2: " + m);
+        }
+        this.store = store;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    /**
+     * 将VectorStore中的指定行插入图中
+     */
+    public synchronized void add(int row) {
+        if (row != count) {
+            throw new IllegalArgumentException("HNSW节点须按行号顺序插入: 期望 " + count + ", 实际 " + row);
+        }
+
+        int level = randomLevel();
+        Node node = new Node(level);
+        ensureCapacity(row + 1);
+        nodes[row] = node;
+
+        Entry current = entry;
+        if (current == null) {
+            count = row + 1;
+            entry = new Entry(row, level);
+            return;
+        }
+
+        float[] vectors = store.vectors();
+        int offset = row * store.dimension();
+        int limit = row;
+
+        int ep = current.node;
+        for (int l = current.level; l > level; l--) {
+            ep = searchLayer(vectors, offset, ep, 1, l, limit).bestRow();
+        }
+
+        for (int l = Math.min(level, current.level); l >= 0; l--) {
+            TopKSelector candidates = searchLayer(vectors, offset, ep, efConstruction, l, limit);
+            ep = candidates.bestRow();
+
+            int[] neighbours = selectNeighbours(candidates.sortDescending(), m);
+            node.links.set(l, neighbours);
+
+            int maxConn = l == 0 ? maxM0 : m;
+            for (int neighbour : neighbours) {
+                link(neighbour, row, l, maxConn);
+            }
+        }
+
+        // 先发布节点数，再发布入口点，保证读取方看到的入口点总在节点数范围内
+        count = row + 1;
+        if (level > current.level) {
+            entry = new Entry(row, level);
+        }
+    }
+
+    /**
+     * 检索与查询向量（已归一化）最相似的k个行号，按相似度降序排列
+     */
+    public List<SearchHit> search(float[] query, int k, int ef) {
+        Entry current = entry;
+        int limit = count;
+        if (current == null || k <= 0) {
+            return new ArrayList<>();
+        }
+
+        int ep = current.node;
+        for (int l = current.level; l > 0; l--) {
+            ep = searchLayer(query, 0, ep, 1, l, limit).bestRow();
+        }
+
+        TopKSelector results = searchLayer(query, 0, ep, Math.max(ef, k), 0, limit).sortDescending();
+        int size = Math.min(k, results.size());
+        List<SearchHit> hits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hits.add(new SearchHit(results.rowAt(i), results.scoreAt(i)));
+        }
+        return hits;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 在指定层做贪心扩展，返回最多ef个最近邻
+     */
+    private TopKSelector searchLayer(float[] query, int queryOffset, int entryPoint, int ef, int level, int limit) {
+        VisitedSet visited = VISITED.get();
+        visited.reset(limit);
+
+        CandidateHeap candidates = new CandidateHeap(ef * 2);
+        TopKSelector results = new TopKSelector(ef);
+
+        float entryScore = store.dot(query, queryOffset, entryPoint);
+        visited.add(entryPoint);
+        candidates.push(entryPoint, entryScore);
+        results.offer(entryPoint, entryScore);
+
+        Node[] graph = nodes;
+        Thread owner = Thread.currentThread();
+        while (candidates.size() > 0) {
+            if (results.isFull() && candidates.peekScore() < results.minScore()) {
+                break;
+            }
+            SearchCancellation.check(owner);
+            int candidate = candidates.pollRow();
+
+            int[] neighbours = graph[candidate].links.get(level);
+            for (int neighbour : neighbours) {
+                if (neighbour >= limit || !visited.add(neighbour)) {
+                    continue;
+                }
+                float score = store.dot(query, queryOffset, neighbour);
+                if (results.offer(neighbour, score)) {
+                    candidates.push(neighbour, score);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 启发式选择邻居：优先保留彼此方向差异大的候选，不足时用被裁剪的候选补齐
+     *
+     * @param candidates 已按相似度降序排列的候选
+     */
+    private int[] selectNeighbours(TopKSelector candidates, int maxConn) {
+        int count = candidates.size();
+        int[] selected = new int[Math.min(maxConn, count)];
+        boolean[] taken = new boolean[count];
+        int size = 0;
+
+        for (int i = 0; i < count && size < selected.length; i++) {
+            int row = candidates.rowAt(i);
+            float score = candidates.scoreAt(i);
+            boolean diverse = true;
+            for (int j = 0; j < size; j++) {
+                if (store.dotRows(row, selected[j]) > score) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[size++] = row;
+                taken[i] = true;
+            }
+        }
+
+        for (int i = 0; i < count && size < selected.length; i++) {
+            if (!taken[i]) {
+                selected[size++] = candidates.rowAt(i);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 为已有节点追加反向边，超过上限时重新选择邻居
+     */
+    private void link(int from, int to, int level, int maxConn) {
+        Node node = nodes[from];
+        int[] current = node.links.get(level);
+
+        if (current.length < maxConn) {
+            int[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = to;
+            node.links.set(level, updated);
+            return;
+        }
+
+        TopKSelector pool = new TopKSelector(current.length + 1);
+        pool.offer(to, store.dotRows(from, to));
+        for (int neighbour : current) {
+            pool.offer(neighbour, store.dotRows(from, neighbour));
+        }
+        node.links.set(level, selectNeighbours(pool.sortDescending(), maxConn));
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - random.nextDouble();
+        return (int) (-Math.log(r) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int size) {
+        if (nodes.length >= size) {
+            return;
+        }
+        int capacity = Math.max(64, nodes.length * 2);
+        while (capacity < size) {
+            capacity *= 2;
+        }
+        nodes = Arrays.copyOf(nodes, capacity);
+    }
+
+    /**
+     * 图节点，每层一个邻居表
+     */
+    private static final class Node {
+        final AtomicReferenceArray<int[]> links;
+
+        Node(int level) {
+            links = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) {
+                links.set(l, new int[0]);
+            }
+        }
+    }
+
+    /**
+     * 入口点及其层数
+     */
+    private static final class Entry {
+        final int node;
+        final int level;
+
+        Entry(int node, int level) {
+            this.node = node;
+            this.level = level;
+        }
+    }
+
+    /**
+     * 检索过程中的访问标记，按线程复用，用轮次号代替清零
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean add(int row) {
+            if (marks[row] == epoch) {
+                return false;
+            }
+            marks[row] = epoch;
+            return true;
+        }
+    }
+
+    /**
+     * 待扩展候选的最大堆，堆顶为相似度最高的候选
+     */
+    private static final class CandidateHeap {
+        private float[] scores;
+        private int[] rows;
+        private int size;
+
+        CandidateHeap(int capacity) {
+            this.scores = new float[Math.max(capacity, 4)];
+            this.rows = new int[scores.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float peekScore() {
+            return scores[0];
+        }
+
+        void push(int row, float score) {
+            if (size == scores.length) {
+                scores = Arrays.copyOf(scores, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] >= score) {
+                    break;
+                }
+                scores[i] = scores[parent];
+                rows[i] = rows[parent];
+                i = parent;
+            }
+            scores[i] = score;
+            rows[i] = row;
+        }
+
+        int pollRow() {
+            int top = rows[0];
+            float score = scores[--size];
+            int row = rows[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && scores[child + 1] > scores[child]) {
+                    child++;
+                }
+                if (scores[child] <= score) {
+                    break;
+                }
+                scores[i] = scores[child];
+                rows[i] = rows[child];
+                i = child;
+            }
+            scores[i] = score;
+            rows[i] = row;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.echo.ragtry.search;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 并行分片精确扫描
+ * 将向量行划分为若干分片，在专用ForkJoinPool上分别求Top-K后合并，结果与单线程扫描一致；
+ * 发起扫描的线程被中断时各分片尽快停止
+ */
+public class ParallelVectorScanner {
+
+    /**
+     * 中断检查间隔（行），须为2的幂
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final ForkJoinPool pool;
+    private final int minShardSize;
+
+    /**
+     * @param minShardSize 单个分片的最小行数，总行数不足两个分片时在调用线程上直接扫描
+     */
+    public ParallelVectorScanner(ForkJoinPool pool, int minShardSize) {
+        this.pool = pool;
+        this.minShardSize = Math.max(minShardSize, 1);
+    }
+
+    public TopKSelector scan(VectorStore store, float[] query, int k, double threshold) {
+        int rows = store.size();
+        int shardSize = Math.max(minShardSize, (rows + pool.getParallelism() - 1) / pool.getParallelism());
+        Thread owner = Thread.currentThread();
+        if (rows < shardSize * 2) {
+            return scanRange(store, query, 0, rows, k, threshold, owner);
+        }
+        return pool.invoke(new ShardTask(store, query, 0, rows, shardSize, k, threshold, owner));
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getMinShardSize() {
+        return minShardSize;
+    }
+
+    /**
+     * 扫描[from, to)行，每CHECK_INTERVAL行检查一次发起线程是否已中断
+     *
+     * @param owner 发起检索的线程
+     */
+    static TopKSelector scanRange(VectorStore store, float[] query, int from, int to, int k, double threshold,
+                                  Thread owner) {
+        TopKSelector selector = new TopKSelector(k, threshold);
+        for (int row = from; row < to; row++) {
+            if (((row - from) & (CHECK_INTERVAL - 1)) == 0) {
+                SearchCancellation.check(owner);
+            }
+            selector.offer(row, store.dot(query, row));
+        }
+        return selector;
+    }
+
+    /**
+     * 二分拆分直到分片不超过shardSize，子任务的Top-K逐级合并
+     */
+    private static final class ShardTask extends RecursiveTask<TopKSelector> {
+        private final VectorStore store;
+        private final float[] query;
+        private final int from;
+        private final int to;
+        private final int shardSize;
+        private final int k;
+        private final double threshold;
+        private final Thread owner;
+
+        ShardTask(VectorStore store, float[] query, int from, int to, int shardSize, int k, double threshold,
+                  Thread owner) {
+            this.store = store;
+            this.query = query;
+            this.from = from;
+            this.to = to;
+            this.shardSize = shardSize;
+            this.k = k;
+            this.threshold = threshold;
+            this.owner = owner;
+        }
+
+        @Override
+        protected TopKSelector compute() {
+            if (to - from <= shardSize) {
+                return scanRange(store, query, from, to, k, threshold, owner);
+            }
+            int mid = (from + to) >>> 1;
+            ShardTask right = new ShardTask(store, query, mid, to, shardSize, k, threshold, owner);
+            right.fork();
+            TopKSelector left = new ShardTask(store, query, from, mid, shardSize, k, threshold, owner).compute();
+            left.addAll(right.join());
+            return left;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.echo.ragtry.search;
+
+/**
+ * 标量打分内核
+ * 四路累加器展开，便于JIT做循环展开和自动向量化，作为Vector API不可用时的兜底实现
+ */
+public class ScalarScoringKernel implements ScoringKernel {
+
+    public static final String NAME = "scalar";
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int upper = length & ~3;
+        for (; i < upper; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int laneWidth() {
+        return 1;
+    }
+}
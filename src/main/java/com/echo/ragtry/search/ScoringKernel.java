@@ -0,0 +1,23 @@
+package com.echo.ragtry.search;
+
+/**
+ * 向量打分内核
+ * 负责检索热点循环中的点积计算，可按运行环境选择不同实现
+ */
+public interface ScoringKernel {
+
+    /**
+     * 计算 a[aOffset, aOffset+length) 与 b[bOffset, bOffset+length) 的点积
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * 内核名称
+     */
+    String name();
+
+    /**
+     * 单次计算的float通道数，标量实现返回1
+     */
+    int laneWidth();
+}
@@ -0,0 +1,24 @@
+package com.echo.ragtry.search;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * 检索取消检查
+ * 超出时间预算的召回会被中断，扫描循环定期检查发起检索的线程是否已中断，及时释放线程
+ */
+final class SearchCancellation {
+
+    private SearchCancellation() {
+    }
+
+    /**
+     * 发起检索的线程已中断时抛出CancellationException，不清除中断状态
+     *
+     * @param owner 发起检索的线程，分片扫描在其他线程上执行时也检查该线程
+     */
+    static void check(Thread owner) {
+        if (owner.isInterrupted()) {
+            throw new CancellationException("检索已取消");
+        }
+    }
+}
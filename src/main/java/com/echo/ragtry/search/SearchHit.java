@@ -0,0 +1,29 @@
+package com.echo.ragtry.search;
+
+/**
+ * 检索命中结果
+ */
+public final class SearchHit {
+
+    private final int row;
+    private final float score;
+
+    public SearchHit(int row, float score) {
+        this.row = row;
+        this.score = score;
+    }
+
+    /**
+     * 索引中的行号
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * 向量检索为余弦相似度，关键词检索为BM25得分
+     */
+    public float getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,56 @@
+package com.echo.ragtry.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 中英文混合分词
+ * 连续的中日韩字符切分为相邻二元组（单字时保留单字），连续的字母数字作为一个词，
+ * 其余字符视为分隔符；英文统一按 Locale.ROOT 小写，结果不受系统默认区域影响
+ */
+public final class TextTokenizer {
+
+    private TextTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = text.codePointAt(i);
+            if (isCjk(cp)) {
+                int start = i;
+                int prev = -1;
+                while (i < length && isCjk(cp = text.codePointAt(i))) {
+                    if (prev >= 0) {
+                        tokens.add(text.substring(prev, i + Character.charCount(cp)));
+                    }
+                    prev = i;
+                    i += Character.charCount(cp);
+                }
+                if (prev == start) {
+                    tokens.add(text.substring(start, i));
+                }
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < length && Character.isLetterOrDigit(cp = text.codePointAt(i)) && !isCjk(cp)) {
+                    i += Character.charCount(cp);
+                }
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,166 @@
+package com.echo.ragtry.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 定长Top-K选择器
+ * 基于原始类型(分数, 行号)的最小堆，堆顶为当前第K名，打分循环中不产生任何对象
+ *
+ * 调用 {@link #sortDescending()} 后堆结构被破坏，只能按下标读取结果
+ */
+public final class TopKSelector {
+
+    private final int k;
+    private final double threshold;
+    private final float[] scores;
+    private final int[] rows;
+    private int size;
+    private boolean sorted;
+
+    public TopKSelector(int k) {
+        this(k, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * @param threshold 只保留分数严格大于该阈值的候选
+     */
+    public TopKSelector(int k, double threshold) {
+        this.k = Math.max(k, 0);
+        this.threshold = threshold;
+        this.scores = new float[this.k];
+        this.rows = new int[this.k];
+    }
+
+    /**
+     * 提交一个候选，返回是否进入当前Top-K
+     */
+    public boolean offer(int row, float score) {
+        if (score <= threshold) {
+            return false;
+        }
+        if (sorted) {
+            throw new IllegalStateException("TopKSelector已排序，不能继续写入");
+        }
+        if (size < k) {
+            siftUp(size++, row, score);
+            return true;
+        }
+        if (k > 0 && score > scores[0]) {
+            siftDown(0, row, score);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 合并另一个选择器中的候选
+     */
+    public void addAll(TopKSelector other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.rows[i], other.scores[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == k;
+    }
+
+    /**
+     * 当前第K名（最低）的分数，仅在size>0时有效
+     */
+    public float minScore() {
+        return scores[0];
+    }
+
+    /**
+     * 当前分数最高的行号，仅在size>0时有效
+     */
+    public int bestRow() {
+        int best = 0;
+        for (int i = 1; i < size; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        return rows[best];
+    }
+
+    /**
+     * 原地堆排序为分数降序
+     */
+    public TopKSelector sortDescending() {
+        if (sorted) {
+            return this;
+        }
+        for (int end = size - 1; end > 0; end--) {
+            float score = scores[end];
+            int row = rows[end];
+            scores[end] = scores[0];
+            rows[end] = rows[0];
+            siftDown(0, row, score, end);
+        }
+        sorted = true;
+        return this;
+    }
+
+    public int rowAt(int index) {
+        return rows[index];
+    }
+
+    public float scoreAt(int index) {
+        return scores[index];
+    }
+
+    /**
+     * 按分数降序输出结果
+     */
+    public List<SearchHit> toHits() {
+        sortDescending();
+        List<SearchHit> hits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hits.add(new SearchHit(rows[i], scores[i]));
+        }
+        return hits;
+    }
+
+    private void siftUp(int i, int row, float score) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            scores[i] = scores[parent];
+            rows[i] = rows[parent];
+            i = parent;
+        }
+        scores[i] = score;
+        rows[i] = row;
+    }
+
+    private void siftDown(int i, int row, float score) {
+        siftDown(i, row, score, size);
+    }
+
+    private void siftDown(int i, int row, float score, int heapSize) {
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (scores[child] >= score) {
+                break;
+            }
+            scores[i] = scores[child];
+            rows[i] = rows[child];
+            i = child;
+        }
+        scores[i] = score;
+        rows[i] = row;
+    }
+}
@@ -0,0 +1,44 @@
+package com.echo.ragtry.search;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于JDK Vector API的SIMD打分内核
+ * 运行时选用CPU首选的向量宽度，需以 --add-modules jdk.incubator.vector 启动
+ */
+public class VectorApiScoringKernel implements ScoringKernel {
+
+    public static final String NAME = "vector";
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int upper = SPECIES.loopBound(length);
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int laneWidth() {
+        return SPECIES.length();
+    }
+}
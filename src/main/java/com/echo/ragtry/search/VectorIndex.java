@@ -0,0 +1,124 @@
+package com.echo.ragtry.search;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 知识库向量索引
+ * 组合VectorStore与可选的HNSW图，提供精确扫描、并行分片扫描与近似检索三种模式
+ */
+public class VectorIndex {
+
+    /** 精确暴力扫描 */
+    public static final String MODE_EXACT = "exact";
+    /** 并行分片精确扫描 */
+    public static final String MODE_PARALLEL = "parallel";
+    /** HNSW近似检索 */
+    public static final String MODE_HNSW = "hnsw";
+
+    private final VectorStore store;
+    private final ParallelVectorScanner scanner;
+    private final HnswIndex hnsw;
+    private final int efSearch;
+
+    /**
+     * 仅支持精确扫描的索引
+     */
+    public VectorIndex(ScoringKernel kernel, ParallelVectorScanner scanner) {
+        this.store = new VectorStore(kernel);
+        this.scanner = scanner;
+        this.hnsw = null;
+        this.efSearch = 0;
+    }
+
+    /**
+     * 同时维护HNSW图的索引
+     */
+    public VectorIndex(ScoringKernel kernel, ParallelVectorScanner scanner, int m, int efConstruction, int efSearch) {
+        this.store = new VectorStore(kernel);
+        this.scanner = scanner;
+        this.hnsw = new HnswIndex(store, m, efConstruction);
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * 写入一条知识向量，启用HNSW时同步插入图中
+     */
+    public synchronized void add(String id, long contentHash, float[] vector) {
+        int row = store.add(id, contentHash, vector);
+        if (hnsw != null) {
+            hnsw.add(row);
+        }
+    }
+
+    /**
+     * 按指定模式检索，返回相似度高于阈值的前k条，按相似度降序排列
+     * 未构建HNSW图时总是退回精确扫描
+     *
+     * @param query 已归一化的查询向量
+     */
+    public List<SearchHit> search(float[] query, int k, double threshold, String mode) {
+        if (MODE_HNSW.equals(mode) && hnsw != null) {
+            List<SearchHit> hits = hnsw.search(query, k, efSearch);
+            hits.removeIf(hit -> hit.getScore() <= threshold);
+            return hits;
+        }
+        if (MODE_PARALLEL.equals(mode) && scanner != null) {
+            return scanner.scan(store, query, k, threshold).toHits();
+        }
+        return exactSearch(query, k, threshold);
+    }
+
+    /**
+     * 以精确扫描为基准计算HNSW的recall@k
+     */
+    public double recallAtK(float[] query, int k) {
+        if (hnsw == null) {
+            throw new IllegalStateException("未构建HNSW索引");
+        }
+        List<SearchHit> expected = exactSearch(query, k, Double.NEGATIVE_INFINITY);
+        if (expected.isEmpty()) {
+            return 1.0;
+        }
+
+        Set<Integer> approximate = new HashSet<>();
+        for (SearchHit hit : hnsw.search(query, k, efSearch)) {
+            approximate.add(hit.getRow());
+        }
+        long found = expected.stream().filter(hit -> approximate.contains(hit.getRow())).count();
+        return (double) found / expected.size();
+    }
+
+    /**
+     * 精确扫描：阈值过滤与Top-K选择在打分循环内完成，O(N log K)且不产生垃圾
+     */
+    private List<SearchHit> exactSearch(float[] query, int k, double threshold) {
+        return ParallelVectorScanner.scanRange(store, query, 0, store.size(), k, threshold,
+                Thread.currentThread()).toHits();
+    }
+
+    public String idAt(int row) {
+        return store.idAt(row);
+    }
+
+    public long hashAt(int row) {
+        return store.hashAt(row);
+    }
+
+    public void copyVector(int row, float[] dst) {
+        store.copyRow(row, dst);
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public int dimension() {
+        return store.dimension();
+    }
+
+    public boolean hasHnsw() {
+        return hnsw != null;
+    }
+}
@@ -0,0 +1,187 @@
+package com.echo.ragtry.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 知识库向量存储
+ * 所有向量按行连续存放在一个float[]中（行优先），插入时归一化，
+ * 检索时余弦相似度退化为普通点积
+ *
+ * 写入方需串行调用 {@link #add}，读取方可并发访问：
+ * 先读取 {@link #size()}，再按行号读取，已写入的行不会被移动或改写
+ */
+public class VectorStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ScoringKernel kernel;
+
+    /**
+     * 首次写入时确定，此后不再改变；volatile使查询路径无需加锁即可读取
+     */
+    private volatile int dimension = -1;
+    private float[] data = new float[0];
+    private String[] ids = new String[0];
+    private long[] hashes = new long[0];
+    private final Map<String, Integer> rowIndex = new HashMap<>();
+
+    /**
+     * 已写入的行数，volatile写保证读取方看到完整的行数据
+     */
+    private volatile int size;
+
+    public VectorStore() {
+        this(new ScalarScoringKernel());
+    }
+
+    public VectorStore(ScoringKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    /**
+     * 追加一条向量，返回其行号
+     *
+     * @param contentHash 生成该向量的知识内容哈希，见 {@link ContentHash}
+     */
+    public synchronized int add(String id, long contentHash, float[] vector) {
+        if (dimension < 0) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    "向量维度不一致: 期望 " + dimension + ", 实际 " + vector.length);
+        }
+        if (rowIndex.containsKey(id)) {
+            throw new IllegalArgumentException("知识ID已存在: " + id);
+        }
+
+        int row = size;
+        ensureCapacity(row + 1);
+        System.arraycopy(normalize(vector), 0, data, row * dimension, dimension);
+        ids[row] = id;
+        hashes[row] = contentHash;
+        rowIndex.put(id, row);
+        size = row + 1;
+        return row;
+    }
+
+    /**
+     * 计算查询向量（已归一化）与指定行的点积
+     */
+    public float dot(float[] query, int row) {
+        return dot(query, 0, row);
+    }
+
+    /**
+     * 计算 query[queryOffset...] 与指定行的点积
+     */
+    float dot(float[] query, int queryOffset, int row) {
+        return kernel.dot(query, queryOffset, data, row * dimension, dimension);
+    }
+
+    /**
+     * 计算两行之间的点积
+     */
+    float dotRows(int a, int b) {
+        float[] vectors = data;
+        return kernel.dot(vectors, a * dimension, vectors, b * dimension, dimension);
+    }
+
+    /**
+     * 底层行优先数组，仅供同包索引在读取 {@link #size()} 之后使用
+     */
+    float[] vectors() {
+        return data;
+    }
+
+    /**
+     * 获取指定行对应的知识ID
+     */
+    public String idAt(int row) {
+        return ids[row];
+    }
+
+    /**
+     * 获取指定行的内容哈希
+     */
+    public long hashAt(int row) {
+        return hashes[row];
+    }
+
+    /**
+     * 将指定行的归一化向量复制到dst
+     */
+    public void copyRow(int row, float[] dst) {
+        System.arraycopy(data, row * dimension, dst, 0, dimension);
+    }
+
+    /**
+     * 获取指定知识ID对应的行号，不存在时返回-1
+     */
+    public synchronized int rowOf(String id) {
+        Integer row = rowIndex.get(id);
+        return row != null ? row : -1;
+    }
+
+    public boolean contains(String id) {
+        return rowOf(id) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 向量维度，尚未写入任何向量时返回-1；不加锁，检索不会与写入方争用
+     */
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 将向量复制为单位向量，零向量原样返回
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = 0.0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = Arrays.copyOf(vector, vector.length);
+        if (norm == 0.0) {
+            return normalized;
+        }
+
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] *= inv;
+        }
+        return normalized;
+    }
+
+    /**
+     * 将接口返回的数值列表转换为float数组
+     */
+    public static float[] toFloatArray(List<? extends Number> values) {
+        float[] vector = new float[values.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = values.get(i).floatValue();
+        }
+        return vector;
+    }
+
+    private void ensureCapacity(int rows) {
+        if (ids.length >= rows) {
+            return;
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, ids.length * 2);
+        while (capacity < rows) {
+            capacity *= 2;
+        }
+        // 先拷贝出新数组再替换引用，并发读取方持有的旧数组仍然完整
+        data = Arrays.copyOf(data, capacity * dimension);
+        ids = Arrays.copyOf(ids, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+    }
+}
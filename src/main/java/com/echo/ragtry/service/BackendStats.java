@@ -0,0 +1,142 @@
+package com.echo.ragtry.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后端调用统计
+ * 以环形缓冲区保存最近若干次已完成调用的耗时，用于估算延迟分位数；
+ * 同时维护耗时与失败率的指数加权移动平均（EWMA）和进行中的调用数，供自适应路由无锁读取。
+ * 被取消的调用没有完成耗时，不计入统计
+ */
+public class BackendStats {
+
+    private final String name;
+    private final long[] latencies;
+    private final double alpha;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private int next;
+    private int count;
+    private long total;
+    private long failures;
+    private volatile double ewmaLatency;
+    private volatile double ewmaErrorRate;
+
+    /**
+     * @param name   后端名称
+     * @param window 保留的最近调用次数
+     * @param alpha  EWMA平滑系数，越大越偏重最近的调用
+     */
+    public BackendStats(String name, int window, double alpha) {
+        this.name = name;
+        this.latencies = new long[Math.max(window, 1)];
+        this.alpha = Math.min(Math.max(alpha, 0.01), 1.0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 调用开始，进行中的调用数加一
+     */
+    public void begin() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * 调用结束（完成、失败或取消），进行中的调用数减一
+     */
+    public void end() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 记录一次已完成调用的耗时（毫秒）
+     *
+     * @param success 响应是否有效，无效响应计入失败率
+     */
+    public synchronized void record(long latencyMillis, boolean success) {
+        latencies[next] = latencyMillis;
+        next = (next + 1) % latencies.length;
+        if (count < latencies.length) {
+            count++;
+        }
+        ewmaLatency = total == 0 ? latencyMillis : ewmaLatency + alpha * (latencyMillis - ewmaLatency);
+        total++;
+        updateErrorRate(success);
+    }
+
+    /**
+     * 只记录调用成功或失败，不记录耗时：调用异常前的耗时不代表正常响应耗时，
+     * 流式响应的首段耗时与完整响应耗时不可比
+     */
+    public synchronized void recordOutcome(boolean success) {
+        updateErrorRate(success);
+    }
+
+    private void updateErrorRate(boolean success) {
+        if (!success) {
+            failures++;
+        }
+        ewmaErrorRate += alpha * ((success ? 0.0 : 1.0) - ewmaErrorRate);
+    }
+
+    /**
+     * 当前窗口内的样本数
+     */
+    public synchronized int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * 当前窗口内耗时的分位数（毫秒），样本不足时返回-1
+     *
+     * @param percentile 分位，如95
+     * @param minSamples 最少样本数
+     */
+    public long percentile(double percentile, int minSamples) {
+        long[] samples;
+        synchronized (this) {
+            if (count == 0 || count < minSamples) {
+                return -1;
+            }
+            samples = Arrays.copyOf(latencies, count);
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(percentile / 100.0 * samples.length) - 1;
+        return samples[Math.min(Math.max(index, 0), samples.length - 1)];
+    }
+
+    /**
+     * 期望耗时（毫秒）：EWMA耗时乘以含本次在内的进行中调用数，再加上失败率乘以失败代价。
+     * 只读取volatile字段与原子计数，不加锁；尚无任何样本时为0，新后端会先被尝试
+     *
+     * @param errorPenaltyMillis 一次失败的代价（毫秒），即失败后降级到另一后端的额外等待
+     */
+    public double expectedLatency(long errorPenaltyMillis) {
+        return ewmaLatency * (inFlight.get() + 1) + ewmaErrorRate * errorPenaltyMillis;
+    }
+
+    /**
+     * 统计信息：调用次数、EWMA耗时与失败率、进行中的调用数、期望耗时与常用分位数
+     */
+    public Map<String, Object> getMetrics(long errorPenaltyMillis) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (this) {
+            metrics.put("completedCalls", total);
+            metrics.put("failedCalls", failures);
+            metrics.put("samples", count);
+        }
+        metrics.put("inFlight", inFlight.get());
+        metrics.put("ewmaLatencyMillis", Math.round(ewmaLatency));
+        metrics.put("ewmaErrorRate", Math.round(ewmaErrorRate * 1000) / 1000.0);
+        metrics.put("expectedLatencyMillis", Math.round(expectedLatency(errorPenaltyMillis)));
+        metrics.put("p50Millis", percentile(50, 1));
+        metrics.put("p95Millis", percentile(95, 1));
+        metrics.put("p99Millis", percentile(99, 1));
+        return metrics;
+    }
+}
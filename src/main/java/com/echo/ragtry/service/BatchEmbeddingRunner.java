@@ -0,0 +1,168 @@
+package com.echo.ragtry.service;
+
+import com.echo.ragtry.entity.QAItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 批量向量化执行器
+ * 按批调用向量化接口，同时在途的批数根据观测到的延迟自适应调整（加性增、乘性减），
+ * 替代固定的请求间隔
+ */
+@Slf4j
+class BatchEmbeddingRunner {
+
+    /**
+     * 延迟EWMA的平滑系数
+     */
+    private static final double ALPHA = 0.3;
+
+    /**
+     * 进度日志的最小间隔（毫秒）
+     */
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    private final Function<List<String>, List<float[]>> embedder;
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    private final Object lock = new Object();
+    private int inFlight;
+    private int limit = 1;
+    private double baselineLatency = Double.MAX_VALUE;
+    private double ewmaLatency;
+
+    private int embedded;
+    private int failed;
+    private long startTime;
+    private long lastProgressTime;
+
+    /**
+     * @param embedder    批量向量化函数，返回与输入一一对应的向量，失败时抛出异常
+     * @param batchSize   每批条数
+     * @param maxInFlight 同时在途的最大批数
+     */
+    BatchEmbeddingRunner(Function<List<String>, List<float[]>> embedder, ExecutorService executor,
+                         int batchSize, int maxInFlight) {
+        this.embedder = embedder;
+        this.executor = executor;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxInFlight = Math.max(maxInFlight, 1);
+    }
+
+    /**
+     * 向量化全部条目，每得到一个向量串行回调一次consumer
+     *
+     * @return 成功向量化的条数
+     */
+    int run(List<QAItem> items, BiConsumer<QAItem, float[]> consumer) throws InterruptedException {
+        startTime = System.currentTimeMillis();
+        lastProgressTime = startTime;
+
+        for (int from = 0; from < items.size(); from += batchSize) {
+            List<QAItem> batch = items.subList(from, Math.min(from + batchSize, items.size()));
+
+            synchronized (lock) {
+                while (inFlight >= limit) {
+                    lock.wait();
+                }
+                inFlight++;
+            }
+
+            try {
+                executor.execute(() -> embedBatch(batch, items.size(), consumer));
+            } catch (RejectedExecutionException e) {
+                synchronized (lock) {
+                    inFlight--;
+                }
+                throw e;
+            }
+        }
+
+        synchronized (lock) {
+            while (inFlight > 0) {
+                lock.wait();
+            }
+            logProgress(items.size(), true);
+            return embedded;
+        }
+    }
+
+    private void embedBatch(List<QAItem> batch, int total, BiConsumer<QAItem, float[]> consumer) {
+        List<String> texts = new ArrayList<>(batch.size());
+        for (QAItem item : batch) {
+            texts.add(item.getQuestion() + " " + item.getAnswer());
+        }
+
+        long start = System.currentTimeMillis();
+        List<float[]> embeddings = null;
+        try {
+            embeddings = embedder.apply(texts);
+        } catch (Exception e) {
+            log.warn("批量向量化失败，跳过 {} 条: {}", batch.size(), e.getMessage());
+        }
+        double latencyPerItem = (double) (System.currentTimeMillis() - start) / batch.size();
+
+        synchronized (lock) {
+            try {
+                if (embeddings != null && embeddings.size() == batch.size()) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        consumer.accept(batch.get(i), embeddings.get(i));
+                    }
+                    embedded += batch.size();
+                    adjustLimit(latencyPerItem, true);
+                } else {
+                    failed += batch.size();
+                    adjustLimit(latencyPerItem, false);
+                }
+                logProgress(total, false);
+            } catch (Exception e) {
+                log.error("写入向量失败", e);
+            } finally {
+                inFlight--;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 延迟接近历史最优时加一个并发批，明显劣化或失败时减半
+     */
+    private void adjustLimit(double latency, boolean success) {
+        if (!success) {
+            limit = Math.max(1, limit / 2);
+            return;
+        }
+
+        ewmaLatency = ewmaLatency == 0 ? latency : ALPHA * latency + (1 - ALPHA) * ewmaLatency;
+        baselineLatency = Math.min(baselineLatency, latency);
+
+        if (ewmaLatency > baselineLatency * 2) {
+            limit = Math.max(1, limit / 2);
+        } else if (ewmaLatency <= baselineLatency * 1.5 && limit < maxInFlight) {
+            limit++;
+        }
+    }
+
+    private void logProgress(int total, boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastProgressTime < PROGRESS_INTERVAL) {
+            return;
+        }
+        lastProgressTime = now;
+
+        int done = embedded + failed;
+        double seconds = Math.max(now - startTime, 1) / 1000.0;
+        double rate = embedded / seconds;
+        long eta = rate > 0 ? Math.round((total - done) / rate) : -1;
+        log.info("向量化进度: {}/{}，失败 {}，速度 {} 条/秒，并发批数 {}，预计剩余 {} 秒",
+                embedded, total, failed, String.format("%.1f", rate), limit, eta);
+    }
+}
@@ -0,0 +1,67 @@
+package com.echo.ragtry.service;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 舱壁线程池
+ * 每个后端使用独立的固定大小线程池与有界队列，队列满时立即拒绝，
+ * 一个后端变慢只会耗尽自己的线程，不会拖垮其他后端或公共ForkJoinPool
+ */
+public class BulkheadExecutor extends ThreadPoolExecutor {
+
+    private final String name;
+    private final boolean virtual;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param name          舱壁名称，同时作为线程名前缀
+     * @param poolSize      线程数
+     * @param queueCapacity 等待队列容量
+     */
+    public BulkheadExecutor(String name, int poolSize, int queueCapacity) {
+        this(name, poolSize, queueCapacity, new CustomizableThreadFactory(name + "-"), false);
+    }
+
+    /**
+     * @param threadFactory 工作线程工厂
+     * @param virtual       工作线程是否为虚拟线程，仅用于运行指标
+     */
+    public BulkheadExecutor(String name, int poolSize, int queueCapacity, ThreadFactory threadFactory, boolean virtual) {
+        super(Math.max(poolSize, 1), Math.max(poolSize, 1), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)), threadFactory);
+        this.name = name;
+        this.virtual = virtual;
+        setRejectedExecutionHandler((task, executor) -> {
+            rejected.increment();
+            throw new RejectedExecutionException("舱壁 " + name + " 已满，拒绝新任务");
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 运行指标：线程数、活跃线程数、队列深度、剩余容量、已完成与被拒绝的任务数
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("virtualThreads", virtual);
+        metrics.put("poolSize", getMaximumPoolSize());
+        metrics.put("activeThreads", getActiveCount());
+        metrics.put("queueDepth", getQueue().size());
+        metrics.put("queueRemaining", getQueue().remainingCapacity());
+        metrics.put("completedTasks", getCompletedTaskCount());
+        metrics.put("rejectedTasks", rejected.sum());
+        return metrics;
+    }
+}
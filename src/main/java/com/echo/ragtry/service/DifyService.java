@@ -8,10 +8,14 @@ import com.echo.ragtry.vo.ChatMessageRequest;
 import com.echo.ragtry.vo.ChatMessageResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import javax.annotation.Resource;
 import java.util.HashMap;
@@ -36,6 +40,10 @@ public class DifyService {
      */
     private static final Map<String, String> userConversations = new ConcurrentHashMap<>();
 
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<ServerSentEvent<String>>() {
+            };
+
     /**
      * 发送消息到Dify
      */
@@ -47,56 +55,129 @@ public class DifyService {
      * 发送消息到Dify
      */
     public ChatMessageResponse sendMessage(ChatMessageRequest request, String userId) {
+        try {
+            return sendMessageReactive(request, userId).block();
+        } catch (Exception e) {
+            log.error("Dify API调用失败: ", e);
+            throw new RuntimeException("Dify API调用失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 非阻塞发送消息到Dify，等待响应期间不占用线程
+     */
+    public Mono<ChatMessageResponse> sendMessageReactive(ChatMessageRequest request, String userId) {
         log.info("发送消息到Dify API: {}", request.getMessage());
 
-        try {
-            // 获取或创建用户的对话会话
-            String conversationId = getUserConversationId(userId, request.getConversationId());
+        // 获取或创建用户的对话会话
+        String conversationId = getUserConversationId(userId, request.getConversationId());
 
-            // 构建发送给Dify的请求体
-            Map<String, Object> difyRequest = buildDifyRequest(request, conversationId, userId);
+        // 构建发送给Dify的请求体
+        Map<String, Object> difyRequest = buildDifyRequest(request, conversationId, userId,
+                CustomerServiceConstant.ResponseMode.BLOCKING);
 
-            log.debug("Dify请求体: {}", JSON.toJSONString(difyRequest));
+        log.debug("Dify请求体: {}", JSON.toJSONString(difyRequest));
 
-            // 调用Dify API获取响应
-            String responseBody = difyWebClient
-                    .post()
-                    .uri(CustomerServiceConstant.ApiPath.CHAT_MESSAGES)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(difyRequest)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
+        // 调用Dify API获取响应
+        return difyWebClient
+                .post()
+                .uri(CustomerServiceConstant.ApiPath.CHAT_MESSAGES)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(difyRequest)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(responseBody -> {
+                    log.debug("Dify API响应: {}", responseBody);
 
-            log.debug("Dify API响应: {}", responseBody);
+                    // 解析响应
+                    JSONObject difyResponse = JSON.parseObject(responseBody);
 
-            // 解析响应
-            JSONObject difyResponse = JSON.parseObject(responseBody);
+                    // 更新会话ID
+                    String responseConversationId = difyResponse.getString("conversation_id");
+                    if (StringUtils.hasText(responseConversationId)) {
+                        userConversations.put(userId, responseConversationId);
+                    }
 
-            // 更新会话ID
-            String responseConversationId = difyResponse.getString("conversation_id");
-            if (StringUtils.hasText(responseConversationId)) {
-                userConversations.put(userId, responseConversationId);
-            }
+                    // 构建响应
+                    ChatMessageResponse response = new ChatMessageResponse();
+                    response.setTaskId(difyResponse.getString("task_id"));
+                    response.setConversationId(responseConversationId != null ? responseConversationId : conversationId);
+                    response.setResponseMode(CustomerServiceConstant.ResponseMode.BLOCKING);
+                    response.setMessageId(difyResponse.getString("message_id"));
+                    response.setAnswer(difyResponse.getString("answer"));
+                    response.setSource(CustomerServiceConstant.SmartRouting.SERVICE_DIFY);
 
-            // 构建响应
-            ChatMessageResponse response = new ChatMessageResponse();
-            response.setTaskId(difyResponse.getString("task_id"));
-            response.setConversationId(responseConversationId != null ? responseConversationId : conversationId);
-            response.setResponseMode(CustomerServiceConstant.ResponseMode.BLOCKING);
-            response.setMessageId(difyResponse.getString("message_id"));
-            response.setAnswer(difyResponse.getString("answer"));
-            response.setSource(CustomerServiceConstant.SmartRouting.SERVICE_DIFY);
+                    log.info("Dify消息处理完成，回复长度: {}",
+                            response.getAnswer() != null ? response.getAnswer().length() : 0);
 
-            log.info("Dify消息处理完成，回复长度: {}",
-                    response.getAnswer() != null ? response.getAnswer().length() : 0);
+                    return response;
+                });
+    }
 
-            return response;
+    /**
+     * 以流式模式发送消息到Dify，逐段返回生成的答案
+     * 逐个解析Dify推送的SSE事件：message/agent_message转发增量文本，message_end视为结束，
+     * error转为异常，其余事件忽略；会话ID与任务ID取自首个携带它们的事件，
+     * 下游取消订阅（如客户端断开）时通知Dify停止生成
+     */
+    public Flux<ChatMessageResponse> streamMessage(ChatMessageRequest request, String userId) {
+        log.info("流式发送消息到Dify API: {}", request.getMessage());
 
-        } catch (Exception e) {
-            log.error("Dify API调用失败: ", e);
-            throw new RuntimeException("Dify API调用失败: " + e.getMessage());
+        String conversationId = getUserConversationId(userId, request.getConversationId());
+        Map<String, Object> difyRequest = buildDifyRequest(request, conversationId, userId,
+                CustomerServiceConstant.ResponseMode.STREAMING);
+        String user = (String) difyRequest.get("user");
+
+        return Flux.defer(() -> {
+            StreamContext context = new StreamContext(conversationId);
+            return difyWebClient
+                    .post()
+                    .uri(CustomerServiceConstant.ApiPath.CHAT_MESSAGES)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .bodyValue(difyRequest)
+                    .retrieve()
+                    .bodyToFlux(SSE_TYPE)
+                    .filter(event -> StringUtils.hasText(event.data()))
+                    .map(event -> JSON.parseObject(event.data()))
+                    .takeUntil(event -> CustomerServiceConstant.DifyEventType.MESSAGE_END.equals(event.getString("event")))
+                    .<ChatMessageResponse>handle((event, sink) -> {
+                        context.capture(event, userId);
+                        String type = event.getString("event");
+                        if (CustomerServiceConstant.DifyEventType.MESSAGE.equals(type)
+                                || CustomerServiceConstant.DifyEventType.AGENT_MESSAGE.equals(type)) {
+                            String answer = event.getString("answer");
+                            if (StringUtils.hasLength(answer)) {
+                                sink.next(context.chunk(answer, event.getString("message_id")));
+                            }
+                        } else if (CustomerServiceConstant.DifyEventType.ERROR.equals(type)) {
+                            sink.error(new RuntimeException("Dify流式响应错误: " + event.getString("message")));
+                        }
+                    })
+                    .doOnComplete(() -> log.info("Dify流式消息处理完成，任务ID: {}", context.taskId))
+                    .doOnCancel(() -> stopStreaming(context.taskId, user));
+        });
+    }
+
+    /**
+     * 通知Dify停止生成，任务ID未知时忽略
+     */
+    private void stopStreaming(String taskId, String user) {
+        if (!StringUtils.hasText(taskId)) {
+            return;
         }
+        Map<String, Object> body = new HashMap<>();
+        body.put("user", user);
+        difyWebClient
+                .post()
+                .uri(CustomerServiceConstant.ApiPath.STOP_STREAMING, taskId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(String.class)
+                .subscribe(
+                        result -> log.info("已停止Dify任务: {}", taskId),
+                        e -> log.warn("停止Dify任务 {} 失败: {}", taskId, e.getMessage()));
     }
 
     /**
@@ -116,11 +197,12 @@ public class DifyService {
     /**
      * 构建发送给Dify的请求体
      */
-    private Map<String, Object> buildDifyRequest(ChatMessageRequest request, String conversationId, String userId) {
+    private Map<String, Object> buildDifyRequest(ChatMessageRequest request, String conversationId, String userId,
+                                                 String responseMode) {
         Map<String, Object> difyRequest = new HashMap<>();
         difyRequest.put("inputs", new HashMap<>());
         difyRequest.put("query", request.getMessage());
-        difyRequest.put("response_mode", CustomerServiceConstant.ResponseMode.BLOCKING);
+        difyRequest.put("response_mode", responseMode);
         difyRequest.put("user", StringUtils.hasText(request.getUser()) ? request.getUser() : userId);
 
         // 如果有会话ID，则继续之前的对话
@@ -162,5 +244,46 @@ public class DifyService {
             return false;
         }
     }
+
+    /**
+     * 单次流式响应的会话与任务信息
+     */
+    private static class StreamContext {
+        String conversationId;
+        String taskId;
+        private boolean captured;
+
+        StreamContext(String conversationId) {
+            this.conversationId = conversationId;
+        }
+
+        /**
+         * 记录首个携带会话ID的事件中的会话ID与任务ID，并更新用户当前会话
+         */
+        void capture(JSONObject event, String userId) {
+            if (captured) {
+                return;
+            }
+            String eventConversationId = event.getString("conversation_id");
+            if (!StringUtils.hasText(eventConversationId)) {
+                return;
+            }
+            captured = true;
+            conversationId = eventConversationId;
+            taskId = event.getString("task_id");
+            userConversations.put(userId, eventConversationId);
+        }
+
+        ChatMessageResponse chunk(String answer, String messageId) {
+            ChatMessageResponse response = new ChatMessageResponse();
+            response.setTaskId(taskId);
+            response.setConversationId(conversationId);
+            response.setMessageId(messageId);
+            response.setResponseMode(CustomerServiceConstant.ResponseMode.STREAMING);
+            response.setAnswer(answer);
+            response.setSource(CustomerServiceConstant.SmartRouting.SERVICE_DIFY);
+            return response;
+        }
+    }
 }
 
@@ -1,22 +1,54 @@
 package com.echo.ragtry.service;
 
+import com.alibaba.fastjson.JSON;
 import com.echo.ragtry.entity.QAItem;
+import com.echo.ragtry.config.BulkheadConfiguration;
 import com.echo.ragtry.config.RAGConfiguration;
 import com.echo.ragtry.constant.CustomerServiceConstant;
+import com.echo.ragtry.embedding.EmbeddingProvider;
+import com.echo.ragtry.search.Bm25Index;
+import com.echo.ragtry.search.ContentHash;
+import com.echo.ragtry.search.EmbeddingFile;
+import com.echo.ragtry.search.FaqMatcher;
+import com.echo.ragtry.search.ParallelVectorScanner;
+import com.echo.ragtry.search.ScoringKernel;
+import com.echo.ragtry.search.SearchHit;
+import com.echo.ragtry.search.VectorIndex;
+import com.echo.ragtry.search.VectorStore;
 import com.echo.ragtry.vo.RAGResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 增强型RAG服务
@@ -26,15 +58,74 @@ import java.util.stream.Collectors;
 @Slf4j
 public class EnhancedRAGService {
 
+    /**
+     * 预计算过程中每新增多少个向量写一次持久化文件
+     */
+    private static final int CHECKPOINT_INTERVAL = 500;
+
+    private static final String NO_ANSWER = "抱歉，我无法理解您的问题。请尝试换个说法，或者联系人工客服获得帮助。";
+
     @Autowired
     private MarkdownKnowledgeLoader knowledgeLoader;
 
     @Autowired
     private RAGConfiguration ragConfig;
 
+    @Autowired
+    private ScoringKernel scoringKernel;
+
+    @Autowired
+    private ParallelVectorScanner parallelScanner;
+
+    @Autowired
+    private EmbeddingProvider embeddingProvider;
+
+    @Autowired
+    private QueryEmbeddingCache queryEmbeddingCache;
+
+    @Autowired
+    private SemanticAnswerCache answerCache;
+
+    @Autowired
+    @Qualifier("hybridSearchExecutor")
+    private ExecutorService hybridSearchExecutor;
+
+    @Autowired
+    @Qualifier("ragExecutor")
+    private BulkheadExecutor ragExecutor;
+
+    @Autowired
+    @Qualifier("embeddingExecutor")
+    private BulkheadExecutor embeddingExecutor;
+
+    @Autowired
+    @Qualifier("indexingExecutor")
+    private BulkheadExecutor indexingExecutor;
+
+    /**
+     * 非阻塞问答中检索步骤使用的调度器，运行在RAG舱壁线程池上
+     */
+    private Scheduler ragScheduler;
+
+    @Resource
+    private WebClient ollamaWebClient;
+
     private RestTemplate restTemplate;
-    private Map<String, List<Double>> embeddingCache = new HashMap<>();
-    private List<QAItem> knowledgeBase = new ArrayList<>();
+
+    /**
+     * 当前生效的知识库快照，写入方构建好下一个快照后整体替换
+     */
+    private final AtomicReference<KnowledgeSnapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * 命中常见问题快速匹配的请求数
+     */
+    private final LongAdder faqHits = new LongAdder();
+
+    /**
+     * 串行化预计算与增量更新，避免重复向量化
+     */
+    private final Object indexLock = new Object();
 
     /**
      * 初始化服务
@@ -44,16 +135,22 @@ public class EnhancedRAGService {
         log.info("初始化增强型RAG服务...");
 
         restTemplate = new RestTemplate();
+        ragScheduler = Schedulers.fromExecutorService(ragExecutor, BulkheadConfiguration.RAG);
+        List<QAItem> empty = new ArrayList<>();
+        snapshot.set(new KnowledgeSnapshot(empty, createVectorIndex(), buildLexicalIndex(empty, null),
+                buildFaqMatcher(empty)));
 
         try {
-            // 加载知识库
-            knowledgeBase = knowledgeLoader.loadKnowledge();
+            // 加载知识库，向量预计算完成前先以空向量索引提供关键词检索
+            List<QAItem> items = knowledgeLoader.loadKnowledge();
+            snapshot.set(new KnowledgeSnapshot(items, createVectorIndex(), buildLexicalIndex(items, null),
+                    buildFaqMatcher(items)));
 
             // 检查Ollama服务连接
             testOllamaConnection();
 
             // 预计算知识库向量（异步）
-            CompletableFuture.runAsync(this::precomputeEmbeddings);
+            CompletableFuture.runAsync(this::precomputeEmbeddings, indexingExecutor);
 
             log.info("增强型RAG服务初始化完成！");
 
@@ -66,95 +163,389 @@ public class EnhancedRAGService {
      * RAG问答 - 主要入口
      */
     public String query(String userQuestion) {
+        return queryDetailed(userQuestion).getAnswer();
+    }
+
+    /**
+     * RAG问答，同时返回答案来源与耗时
+     */
+    public RAGResponse queryDetailed(String userQuestion) {
         long startTime = System.currentTimeMillis();
 
         try {
             log.info("处理RAG查询: {}", userQuestion);
+            // 整个查询只读取一次知识快照，热更新不会让同一次查询看到新旧混杂的索引
+            KnowledgeSnapshot state = snapshot.get();
 
-            // 1. 首先尝试向量化检索
-            String vectorAnswer = performVectorSearch(userQuestion);
-            if (vectorAnswer != null) {
-                log.info("向量检索成功，耗时: {}ms", System.currentTimeMillis() - startTime);
-                return vectorAnswer;
+            // 0. 与知识库问题完全相同或完整包含时直接返回答案
+            String faqAnswer = performFaqMatch(state, userQuestion);
+            if (faqAnswer != null) {
+                faqHits.increment();
+                log.info("常见问题匹配成功，耗时: {}ms", System.currentTimeMillis() - startTime);
+                return buildResponse(faqAnswer, CustomerServiceConstant.SmartRouting.SERVICE_FAQ, startTime);
             }
 
-            // 2. 降级到关键词匹配
-            String keywordAnswer = performKeywordSearch(userQuestion);
+            // 1. 向量检索，启用混合检索时两路召回融合
+            VectorCandidates context = retrieveContext(state, userQuestion);
+            if (context != null && !context.matches.isEmpty()) {
+                String answer = answerFromMatches(userQuestion, context.query, context.matches);
+                log.info("检索生成成功，耗时: {}ms", System.currentTimeMillis() - startTime);
+                return buildResponse(answer, CustomerServiceConstant.SmartRouting.SERVICE_RAG, startTime);
+            }
+
+            // 2. 降级到关键词匹配，混合检索已包含关键词召回，无结果时直接给出默认回复
+            String keywordAnswer = performKeywordSearch(state, userQuestion);
             if (keywordAnswer != null) {
                 log.info("关键词匹配成功，耗时: {}ms", System.currentTimeMillis() - startTime);
-                return keywordAnswer;
+                return buildResponse(keywordAnswer, CustomerServiceConstant.SmartRouting.SERVICE_KEYWORD, startTime);
             }
 
             // 3. 无法匹配时的默认回复
-            return "抱歉，我无法理解您的问题。请尝试换个说法，或者联系人工客服获得帮助。";
+            return buildResponse(NO_ANSWER, CustomerServiceConstant.SmartRouting.SERVICE_RAG, startTime);
 
         } catch (Exception e) {
             log.error("RAG查询失败", e);
-            return "系统暂时繁忙，请稍后再试。";
+            return buildResponse("系统暂时繁忙，请稍后再试。", CustomerServiceConstant.SmartRouting.SERVICE_RAG, startTime);
         }
     }
 
     /**
-     * 执行向量化检索
+     * 流式RAG问答，逐段返回大模型生成的答案
+     * 检索与非流式问答相同；常见问题命中、语义答案缓存命中、关键词降级或生成失败时整段返回一次，
+     * 每段的responseTime为从收到问题到该段产出的耗时，首段即首字延迟
      */
-    private String performVectorSearch(String userQuestion) {
-        try {
-            // 获取用户问题的向量
-            List<Double> questionEmbedding = getEmbedding(userQuestion);
-            if (questionEmbedding == null) {
-                return null;
+    public Flux<RAGResponse> streamQuery(String userQuestion) {
+        // 检索过程会阻塞（查询向量化、召回），放到RAG舱壁线程池执行，不占用调用方线程，线程池满时直接拒绝
+        return Mono.fromCallable(() -> prepareStream(userQuestion))
+                .subscribeOn(ragScheduler)
+                .flatMapMany(stream -> stream)
+                .onErrorResume(e -> {
+                    log.error("流式RAG查询失败", e);
+                    return Flux.just(buildResponse("系统暂时繁忙，请稍后再试。",
+                            CustomerServiceConstant.SmartRouting.SERVICE_RAG, System.currentTimeMillis()));
+                });
+    }
+
+    /**
+     * 非阻塞RAG问答，与流式问答共用检索与生成流程，汇总全部片段后一次返回
+     * 检索在弹性线程池执行，等待大模型生成期间不占用线程
+     */
+    public Mono<RAGResponse> queryReactive(String userQuestion) {
+        return Mono.defer(() -> {
+            long startTime = System.currentTimeMillis();
+            return streamQuery(userQuestion)
+                    .collectList()
+                    .map(chunks -> {
+                        StringBuilder answer = new StringBuilder();
+                        chunks.forEach(chunk -> answer.append(chunk.getAnswer()));
+                        return buildResponse(answer.toString(), chunks.get(0).getSource(), startTime);
+                    });
+        });
+    }
+
+    private Flux<RAGResponse> prepareStream(String userQuestion) {
+        long startTime = System.currentTimeMillis();
+        log.info("处理流式RAG查询: {}", userQuestion);
+        KnowledgeSnapshot state = snapshot.get();
+
+        String faqAnswer = performFaqMatch(state, userQuestion);
+        if (faqAnswer != null) {
+            faqHits.increment();
+            return Flux.just(buildResponse(faqAnswer, CustomerServiceConstant.SmartRouting.SERVICE_FAQ, startTime));
+        }
+
+        VectorCandidates context = retrieveContext(state, userQuestion);
+        if (context != null && !context.matches.isEmpty()) {
+            return streamFromMatches(userQuestion, context.query, context.matches, startTime);
+        }
+
+        String keywordAnswer = performKeywordSearch(state, userQuestion);
+        if (keywordAnswer != null) {
+            return Flux.just(buildResponse(keywordAnswer, CustomerServiceConstant.SmartRouting.SERVICE_KEYWORD, startTime));
+        }
+        return Flux.just(buildResponse(NO_ANSWER, CustomerServiceConstant.SmartRouting.SERVICE_RAG, startTime));
+    }
+
+    /**
+     * 流式生成回复，完整生成后写入语义答案缓存；尚未输出任何内容就失败时返回最相似的答案，
+     * 已输出部分内容后失败则直接结束
+     */
+    private Flux<RAGResponse> streamFromMatches(String userQuestion, float[] query, List<QAMatch> matches,
+                                                long startTime) {
+        List<String> matchedIds = matchedIds(matches);
+        long[] matchedHashes = matchedHashes(matches);
+
+        if (query != null) {
+            String cached = answerCache.get(query, matchedIds, matchedHashes);
+            if (cached != null) {
+                log.info("语义答案缓存命中");
+                return Flux.just(buildResponse(cached, CustomerServiceConstant.SmartRouting.SERVICE_RAG, startTime));
             }
+        }
 
-            // 计算与知识库的相似度
-            List<QAMatch> matches = new ArrayList<>();
-            for (QAItem item : knowledgeBase) {
-                List<Double> itemEmbedding = embeddingCache.get(item.getId());
-                if (itemEmbedding != null) {
-                    double similarity = calculateCosineSimilarity(questionEmbedding, itemEmbedding);
-                    matches.add(new QAMatch(item, similarity));
-                }
+        String prompt = buildPrompt(userQuestion, buildContext(matches));
+        String fallback = matches.get(0).qaItem.getAnswer();
+        return Flux.defer(() -> {
+            StringBuilder answer = new StringBuilder();
+            return callOllamaGenerateStream(prompt)
+                    .doOnNext(answer::append)
+                    .doOnComplete(() -> {
+                        log.info("流式生成完成，长度: {}，耗时: {}ms", answer.length(),
+                                System.currentTimeMillis() - startTime);
+                        if (query != null && answer.length() > 0) {
+                            answerCache.put(query, matchedIds, matchedHashes, answer.toString());
+                        }
+                    })
+                    .map(token -> buildResponse(token, CustomerServiceConstant.SmartRouting.SERVICE_RAG, startTime))
+                    .onErrorResume(e -> {
+                        log.error("Ollama流式生成失败，已输出 {} 字", answer.length(), e);
+                        return Flux.empty();
+                    })
+                    .switchIfEmpty(Mono.fromSupplier(() ->
+                            buildResponse(fallback, CustomerServiceConstant.SmartRouting.SERVICE_RAG, startTime)));
+        });
+    }
+
+    private RAGResponse buildResponse(String answer, String source, long startTime) {
+        return RAGResponse.builder()
+                .answer(answer)
+                .source(source)
+                .responseTime(System.currentTimeMillis() - startTime)
+                .status("success")
+                .build();
+    }
+
+    /**
+     * 常见问题快速匹配，不调用向量化与大模型
+     */
+    private String performFaqMatch(KnowledgeSnapshot state, String userQuestion) {
+        if (!ragConfig.getSearch().getFaq().isEnabled()) {
+            return null;
+        }
+        String id = state.faq.match(userQuestion);
+        QAItem item = id != null ? state.itemsById.get(id) : null;
+        return item != null ? item.getAnswer() : null;
+    }
+
+    /**
+     * 检索用于生成答案的知识，启用混合检索时两路召回融合，否则只做向量召回
+     *
+     * @return 查询向量与匹配结果，失败时返回null；混合检索中向量召回失败时查询向量为null
+     */
+    private VectorCandidates retrieveContext(KnowledgeSnapshot state, String userQuestion) {
+        RAGConfiguration.Search search = ragConfig.getSearch();
+        if (search.getHybrid().isEnabled()) {
+            return performHybridSearch(state, userQuestion);
+        }
+
+        try {
+            return retrieveByVector(userQuestion, state, search.getMaxResults(), search.getSimilarityThreshold());
+        } catch (Exception e) {
+            log.error("向量检索失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 向量召回，返回查询向量与相似度高于阈值的前k条匹配
+     */
+    private VectorCandidates retrieveByVector(String userQuestion, KnowledgeSnapshot state, int k, double threshold) {
+        // 获取用户问题的归一化向量，与知识库向量做点积即为余弦相似度
+        float[] query = getQueryEmbedding(userQuestion);
+        if (query == null) {
+            return null;
+        }
+
+        VectorIndex index = state.vectors;
+        if (index.size() == 0 || query.length != index.dimension()) {
+            return null;
+        }
+
+        List<SearchHit> hits = index.search(query, k, threshold, ragConfig.getSearch().getMode());
+
+        List<QAMatch> matches = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            QAItem item = state.itemsById.get(index.idAt(hit.getRow()));
+            if (item != null) {
+                matches.add(new QAMatch(item, hit.getScore(), index.hashAt(hit.getRow())));
             }
+        }
+        return new VectorCandidates(query, matches);
+    }
 
-            // 筛选高相似度的匹配
-            List<QAMatch> topMatches = matches.stream()
-                    .filter(match -> match.similarity > ragConfig.getSearch().getSimilarityThreshold())
-                    .sorted((a, b) -> Double.compare(b.similarity, a.similarity))
-                    .limit(ragConfig.getSearch().getMaxResults())
-                    .collect(Collectors.toList());
+    /**
+     * 关键词召回，返回BM25得分最高的前k条匹配
+     */
+    private List<QAMatch> retrieveByKeyword(String userQuestion, KnowledgeSnapshot state, int k) {
+        Bm25Index index = state.lexical;
+        List<SearchHit> hits = index.search(userQuestion, k,
+                ragConfig.getSearch().getKeyword().getMinMatchRatio());
 
-            if (topMatches.isEmpty()) {
-                return null;
+        List<QAMatch> matches = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            QAItem item = state.itemsById.get(index.idAt(hit.getRow()));
+            if (item != null) {
+                matches.add(new QAMatch(item, hit.getScore(), index.hashAt(hit.getRow())));
             }
+        }
+        return matches;
+    }
+
+    /**
+     * 混合检索：向量与关键词两路并发召回，各自有独立的时间预算，超时的一路直接丢弃，
+     * 结果按倒数排名融合（RRF）或加权得分融合
+     */
+    private VectorCandidates performHybridSearch(KnowledgeSnapshot state, String userQuestion) {
+        try {
+            RAGConfiguration.Search search = ragConfig.getSearch();
+            RAGConfiguration.Hybrid hybrid = search.getHybrid();
+            int candidates = Math.max(hybrid.getCandidates(), search.getMaxResults());
 
-            // 使用最匹配的答案生成回复
-            return generateRAGAnswer(userQuestion, topMatches);
+            long start = System.currentTimeMillis();
+            Future<VectorCandidates> vectorLeg = submitLeg(
+                    () -> retrieveByVector(userQuestion, state, candidates, search.getSimilarityThreshold()));
+            Future<List<QAMatch>> keywordLeg = submitLeg(
+                    () -> retrieveByKeyword(userQuestion, state, candidates));
+
+            VectorCandidates vector = awaitLeg("向量", vectorLeg, start, hybrid.getVectorBudget());
+            List<QAMatch> keyword = awaitLeg("关键词", keywordLeg, start, hybrid.getKeywordBudget());
+
+            List<QAMatch> fused = fuse(vector != null ? vector.matches : null, keyword,
+                    hybrid, search.getMaxResults());
+            return new VectorCandidates(vector != null ? vector.query : null, fused);
 
         } catch (Exception e) {
-            log.error("向量检索失败", e);
+            log.error("混合检索失败", e);
             return null;
         }
     }
 
     /**
-     * 执行关键词匹配（降级方案）
+     * 提交一路召回，返回的FutureTask取消时会中断执行线程，扫描循环检查到中断后停止
      */
-    private String performKeywordSearch(String userQuestion) {
+    private <T> Future<T> submitLeg(Callable<T> leg) {
         try {
-            String question = userQuestion.toLowerCase();
+            return hybridSearchExecutor.submit(leg);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            for (QAItem item : knowledgeBase) {
-                String itemQuestion = item.getQuestion().toLowerCase();
-                String itemAnswer = item.getAnswer().toLowerCase();
+    /**
+     * 在预算内等待一路召回结果，超时或失败时返回null
+     * 超时的一路被中断：向量扫描、HNSW与BM25检索随即停止并释放线程，
+     * 查询向量化（调用模型服务）不响应中断，完成后在扫描开始时停止
+     *
+     * @param start  混合检索开始时间
+     * @param budget 该路召回的时间预算(毫秒)
+     */
+    private <T> T awaitLeg(String name, Future<T> leg, long start, long budget) {
+        long remaining = budget - (System.currentTimeMillis() - start);
+        try {
+            return leg.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            leg.cancel(true);
+            log.warn("{}召回超过 {}ms 预算，本次丢弃", name, budget);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("{}召回失败: {}", name, e.getMessage());
+        }
+        return null;
+    }
 
-                // 简单的关键词匹配
-                if (itemQuestion.contains(question) ||
-                        question.contains(itemQuestion) ||
-                        itemAnswer.contains(question)) {
-                    return item.getAnswer();
-                }
+    /**
+     * 融合两路召回结果，返回得分最高的前k条
+     */
+    private List<QAMatch> fuse(List<QAMatch> vector, List<QAMatch> keyword, RAGConfiguration.Hybrid hybrid, int k) {
+        Map<String, QAMatch> first = new HashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        boolean weighted = RAGConfiguration.Hybrid.FUSION_WEIGHTED.equals(hybrid.getFusion());
+
+        List<List<QAMatch>> legs = Arrays.asList(vector, keyword);
+        double[] weights = {hybrid.getVectorWeight(), hybrid.getKeywordWeight()};
+        for (int leg = 0; leg < legs.size(); leg++) {
+            List<QAMatch> matches = legs.get(leg);
+            if (matches == null || matches.isEmpty()) {
+                continue;
+            }
+            // 加权融合时各路得分先按本路最高分归一化到[0, 1]
+            double max = matches.get(0).similarity;
+            for (int rank = 0; rank < matches.size(); rank++) {
+                QAMatch match = matches.get(rank);
+                double score = weighted
+                        ? weights[leg] * (max > 0 ? match.similarity / max : 0.0)
+                        : weights[leg] / (hybrid.getRrfK() + rank + 1);
+                first.putIfAbsent(match.qaItem.getId(), match);
+                scores.merge(match.qaItem.getId(), score, Double::sum);
             }
+        }
+
+        List<QAMatch> fused = new ArrayList<>(first.size());
+        for (QAMatch match : first.values()) {
+            fused.add(new QAMatch(match.qaItem, scores.get(match.qaItem.getId()), match.contentHash));
+        }
+        fused.sort((a, b) -> Double.compare(b.similarity, a.similarity));
+        return fused.size() > k ? new ArrayList<>(fused.subList(0, k)) : fused;
+    }
+
+    /**
+     * 基于检索到的知识生成回复
+     * 相似问题检索到相同知识时复用已生成的答案，生成失败时直接返回最相似的答案
+     *
+     * @param query 归一化的查询向量，为null时不使用语义答案缓存
+     */
+    private String answerFromMatches(String userQuestion, float[] query, List<QAMatch> matches) {
+        List<String> matchedIds = matchedIds(matches);
+        long[] matchedHashes = matchedHashes(matches);
+
+        if (query != null) {
+            String cached = answerCache.get(query, matchedIds, matchedHashes);
+            if (cached != null) {
+                log.info("语义答案缓存命中");
+                return cached;
+            }
+        }
+
+        // 使用最匹配的答案生成回复
+        String answer = generateRAGAnswer(userQuestion, matches);
+        if (answer != null) {
+            if (query != null) {
+                answerCache.put(query, matchedIds, matchedHashes, answer);
+            }
+            return answer;
+        }
+        // 降级：直接返回最相似的答案
+        return matches.get(0).qaItem.getAnswer();
+    }
+
+    private static List<String> matchedIds(List<QAMatch> matches) {
+        List<String> ids = new ArrayList<>(matches.size());
+        for (QAMatch match : matches) {
+            ids.add(match.qaItem.getId());
+        }
+        return ids;
+    }
 
+    private static long[] matchedHashes(List<QAMatch> matches) {
+        long[] hashes = new long[matches.size()];
+        for (int i = 0; i < matches.size(); i++) {
+            hashes[i] = matches.get(i).contentHash;
+        }
+        return hashes;
+    }
+
+    /**
+     * 执行关键词匹配（降级方案）
+     * 使用BM25倒排索引返回得分最高的条目，混合检索已包含关键词召回，此时不再降级
+     */
+    private String performKeywordSearch(KnowledgeSnapshot state, String userQuestion) {
+        if (ragConfig.getSearch().getHybrid().isEnabled()) {
             return null;
+        }
+        try {
+            List<QAMatch> matches = retrieveByKeyword(userQuestion, state, 1);
+            return matches.isEmpty() ? null : matches.get(0).qaItem.getAnswer();
         } catch (Exception e) {
             log.error("关键词匹配失败", e);
             return null;
@@ -162,26 +553,24 @@ public class EnhancedRAGService {
     }
 
     /**
-     * 生成RAG答案
+     * 生成RAG答案，生成失败时返回null
      */
     private String generateRAGAnswer(String userQuestion, List<QAMatch> matches) {
-        try {
-            // 构建上下文
-            StringBuilder context = new StringBuilder();
-            for (QAMatch match : matches) {
-                context.append("Q: ").append(match.qaItem.getQuestion()).append("\n");
-                context.append("A: ").append(match.qaItem.getAnswer()).append("\n\n");
-            }
-
-            // 调用Ollama生成答案
-            String prompt = buildPrompt(userQuestion, context.toString());
-            return callOllamaGenerate(prompt);
+        // 调用Ollama生成答案
+        String prompt = buildPrompt(userQuestion, buildContext(matches));
+        return callOllamaGenerate(prompt);
+    }
 
-        } catch (Exception e) {
-            log.error("生成RAG答案失败", e);
-            // 降级：直接返回最相似的答案
-            return matches.get(0).qaItem.getAnswer();
+    /**
+     * 构建上下文
+     */
+    private String buildContext(List<QAMatch> matches) {
+        StringBuilder context = new StringBuilder();
+        for (QAMatch match : matches) {
+            context.append("Q: ").append(match.qaItem.getQuestion()).append("\n");
+            context.append("A: ").append(match.qaItem.getAnswer()).append("\n\n");
         }
+        return context.toString();
     }
 
     /**
@@ -226,53 +615,46 @@ public class EnhancedRAGService {
     }
 
     /**
-     * 获取文本的向量表示
+     * 流式调用Ollama生成回答，按NDJSON逐行解析，逐段返回生成的文本
+     * 下游按需拉取，客户端消费慢时不会在内存中堆积整段回答
      */
-    private List<Double> getEmbedding(String text) {
-        try {
-            String url = ragConfig.getOllama().getBaseUrl() + "/api/embeddings";
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", ragConfig.getOllama().getEmbeddingModel());
-            requestBody.put("prompt", text);
+    private Flux<String> callOllamaGenerateStream(String prompt) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", ragConfig.getOllama().getChatModel());
+        requestBody.put("prompt", prompt);
+        requestBody.put("stream", true);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, request, Map.class);
-
-            if (response.getBody() != null && response.getBody().get("embedding") != null) {
-                List<Double> embedding = (List<Double>) response.getBody().get("embedding");
-                return embedding;
-            }
-
-            return null;
-        } catch (Exception e) {
-            log.error("获取embedding失败: {}", e.getMessage());
-            return null;
-        }
+        return ollamaWebClient
+                .post()
+                .uri("/api/generate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToFlux(String.class)
+                .filter(StringUtils::hasText)
+                .map(JSON::parseObject)
+                .takeUntil(chunk -> chunk.getBooleanValue("done"))
+                .handle((chunk, sink) -> {
+                    String error = chunk.getString("error");
+                    if (error != null) {
+                        sink.error(new IllegalStateException("Ollama生成失败: " + error));
+                        return;
+                    }
+                    String token = chunk.getString("response");
+                    if (StringUtils.hasLength(token)) {
+                        sink.next(token);
+                    }
+                });
     }
 
     /**
-     * 计算余弦相似度
+     * 获取查询文本的归一化向量，优先读取查询向量缓存
      */
-    private double calculateCosineSimilarity(List<Double> vectorA, List<Double> vectorB) {
-        if (vectorA.size() != vectorB.size()) {
-            return 0.0;
-        }
-
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-
-        for (int i = 0; i < vectorA.size(); i++) {
-            dotProduct += vectorA.get(i) * vectorB.get(i);
-            normA += Math.pow(vectorA.get(i), 2);
-            normB += Math.pow(vectorB.get(i), 2);
-        }
-
-        return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
+    private float[] getQueryEmbedding(String text) {
+        return queryEmbeddingCache.get(text, t -> {
+            float[] embedding = embeddingProvider.embed(t);
+            return embedding != null ? VectorStore.normalize(embedding) : null;
+        });
     }
 
     /**
@@ -290,45 +672,331 @@ public class EnhancedRAGService {
 
     /**
      * 预计算知识库向量
+     * 在新索引中写入全部向量后整体切换快照，期间查询使用不含向量的启动快照
      */
     private void precomputeEmbeddings() {
-        try {
-            log.info("开始预计算 {} 条知识库的向量...", knowledgeBase.size());
+        synchronized (indexLock) {
+            List<QAItem> items = snapshot.get().items;
+            log.info("开始预计算 {} 条知识库的向量...", items.size());
+            applyKnowledge(items);
+        }
+    }
+
+    /**
+     * 增量更新知识库
+     * 按内容哈希与当前索引比对，只向量化新增或修改的条目，删除的条目自然丢弃，
+     * 新索引就绪后与知识库一起整体切换，切换前查询继续使用旧索引；
+     * 语义答案缓存只清除引用了变化条目的答案。
+     * 增量只针对模型调用：向量存储与HNSW图每次按全部条目重建（复用已有向量，不调用模型），
+     * 重建耗时随知识库规模增长，在旁路完成，不影响查询
+     */
+    private void applyKnowledge(List<QAItem> items) {
+        synchronized (indexLock) {
+            try {
+                KnowledgeSnapshot current = snapshot.get();
+                VectorIndex next = createVectorIndex();
+                int embedded = fillIndex(items, next, current.vectors);
+
+                snapshot.set(new KnowledgeSnapshot(items, next, buildLexicalIndex(items, current.lexical),
+                        buildFaqMatcher(items)));
+                answerCache.invalidateItems(changedItemIds(current, items));
+                log.info("知识库增量更新完成，共 {} 条，新向量化 {} 条，索引向量 {} 个",
+                        items.size(), embedded, next.size());
+            } catch (Exception e) {
+                log.error("增量更新知识库失败，继续使用旧索引", e);
+            }
+        }
+    }
+
+    /**
+     * 内容变化或已删除的知识条目ID
+     */
+    private Set<String> changedItemIds(KnowledgeSnapshot previous, List<QAItem> items) {
+        Set<String> changed = new HashSet<>(previous.itemsById.keySet());
+        for (QAItem item : items) {
+            QAItem old = previous.itemsById.get(item.getId());
+            if (old != null && old.getQuestion().equals(item.getQuestion())
+                    && old.getAnswer().equals(item.getAnswer())) {
+                changed.remove(item.getId());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 为全部条目写入向量
+     * 内容未变化的条目优先复用上一版索引，其次复用持久化文件，其余批量向量化；
+     * 每个条目都会写入新索引，启用HNSW时逐条插入新图
+     *
+     * @param previous 上一版索引，可为null
+     * @return 新向量化的条数
+     */
+    private int fillIndex(List<QAItem> items, VectorIndex index, VectorIndex previous) throws InterruptedException {
+        Map<Long, Integer> previousRows = new HashMap<>();
+        if (previous != null) {
+            for (int row = 0; row < previous.size(); row++) {
+                previousRows.put(previous.hashAt(row), row);
+            }
+        }
 
-            for (QAItem item : knowledgeBase) {
-                String content = item.getQuestion() + " " + item.getAnswer();
-                List<Double> embedding = getEmbedding(content);
+        List<QAItem> pending = new ArrayList<>();
+        Set<Long> hashes = new HashSet<>();
+        float[] buffer = previous != null && previous.size() > 0 ? new float[previous.dimension()] : null;
+        for (QAItem item : items) {
+            long hash = ContentHash.of(item.getQuestion(), item.getAnswer());
+            hashes.add(hash);
+            Integer row = previousRows.get(hash);
+            if (row != null) {
+                previous.copyVector(row, buffer);
+                index.add(item.getId(), hash, buffer);
+            } else {
+                pending.add(item);
+            }
+        }
+        if (previous != null) {
+            long removed = previousRows.keySet().stream().filter(hash -> !hashes.contains(hash)).count();
+            log.info("知识库差异: 复用 {} 个向量，新增或修改 {} 条，删除 {} 条",
+                    index.size(), pending.size(), removed);
+        }
+
+        // 其余条目尝试复用持久化文件中的向量
+        EmbeddingFile stored = pending.isEmpty() ? null : openEmbeddingFile();
+        if (stored != null) {
+            List<QAItem> missing = new ArrayList<>();
+            for (QAItem item : pending) {
+                long hash = ContentHash.of(item.getQuestion(), item.getAnswer());
+                float[] embedding = stored.find(hash);
                 if (embedding != null) {
-                    embeddingCache.put(item.getId(), embedding);
+                    index.add(item.getId(), hash, embedding);
+                } else {
+                    missing.add(item);
                 }
+            }
+            log.info("从向量文件复用 {} 个向量，需重新计算 {} 个", pending.size() - missing.size(), missing.size());
+            pending = missing;
+        }
 
-                // 避免请求过快
-                Thread.sleep(ragConfig.getAsync().getPrecomputeDelay());
+        RAGConfiguration.Async async = ragConfig.getAsync();
+        AtomicInteger added = new AtomicInteger();
+        BatchEmbeddingRunner runner = new BatchEmbeddingRunner(
+                embeddingProvider::embedAll, embeddingExecutor, async.getBatchSize(), async.getMaxInFlightBatches());
+        int embedded = runner.run(pending, (item, embedding) -> {
+            index.add(item.getId(), ContentHash.of(item.getQuestion(), item.getAnswer()), embedding);
+            if (added.incrementAndGet() % CHECKPOINT_INTERVAL == 0) {
+                saveEmbeddingFile(index);
             }
+        });
 
-            log.info("知识库向量预计算完成，共缓存 {} 个向量", embeddingCache.size());
+        // 只有新向量化了条目、或条目集合与向量文件中的不一致（如删除了条目）时才重写文件；
+        // 向量全部复用自上一版索引时，上一版可能只是启动时的空索引，不能据此判断文件是否需要更新
+        if (embedded > 0) {
+            saveEmbeddingFile(index);
+        } else {
+            EmbeddingFile persisted = stored != null ? stored : openEmbeddingFile();
+            if (persisted == null || !persisted.containsExactly(hashes)) {
+                saveEmbeddingFile(index);
+            }
+        }
+        return embedded;
+    }
 
-        } catch (Exception e) {
-            log.error("预计算向量失败", e);
+    /**
+     * 打开持久化向量文件，文件不存在、模型不一致或损坏时返回null
+     */
+    private EmbeddingFile openEmbeddingFile() {
+        Path path = embeddingStorePath();
+        if (path == null || !Files.exists(path)) {
+            return null;
+        }
+
+        try {
+            EmbeddingFile file = EmbeddingFile.open(path);
+            String model = embeddingProvider.getModelName();
+            if (!model.equals(file.getModel())) {
+                log.info("向量文件模型 {} 与当前模型 {} 不一致，忽略该文件", file.getModel(), model);
+                return null;
+            }
+            log.info("已映射向量文件: {}，共 {} 条，维度 {}", path, file.getCount(), file.getDimension());
+            return file;
+        } catch (IOException e) {
+            log.warn("读取向量文件失败，将重新计算全部向量: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 将当前索引写入持久化向量文件
+     */
+    private void saveEmbeddingFile(VectorIndex index) {
+        Path path = embeddingStorePath();
+        if (path == null || index.size() == 0) {
+            return;
+        }
+
+        try {
+            EmbeddingFile.write(path, embeddingProvider.getModelName(), index);
+            log.info("已写入向量文件: {}，共 {} 个向量", path, index.size());
+        } catch (IOException e) {
+            log.warn("写入向量文件失败: {}", e.getMessage());
         }
     }
 
+    private Path embeddingStorePath() {
+        String store = ragConfig.getKnowledge().getEmbeddingStore();
+        return store == null || store.isBlank() ? null : Paths.get(store);
+    }
+
     /**
      * 重新加载知识库
+     * 在后台索引任务中持有索引锁读取全部文件并切换，与文件监听的增量更新串行执行，
+     * 读取到的内容不会早于此前已应用的文件变化；任一文件读取失败时放弃本次加载，继续使用当前知识库
      */
     public void reloadKnowledge() {
+        log.info("重新加载知识库...");
         try {
-            log.info("重新加载知识库...");
-            knowledgeBase = knowledgeLoader.loadKnowledge();
-            embeddingCache.clear();
+            CompletableFuture.runAsync(this::reloadFromFiles, indexingExecutor);
+            log.info("已提交知识库重新加载任务，正在读取文件并增量更新向量索引");
+        } catch (RejectedExecutionException e) {
+            log.error("重新加载知识库失败，后台索引队列已满，继续使用当前知识库", e);
+        }
+    }
 
-            // 异步重新计算向量
-            CompletableFuture.runAsync(this::precomputeEmbeddings);
+    private void reloadFromFiles() {
+        synchronized (indexLock) {
+            List<QAItem> items;
+            try {
+                items = knowledgeLoader.reloadKnowledgeFiles();
+            } catch (IOException e) {
+                log.error("重新加载知识库失败，继续使用当前知识库", e);
+                return;
+            }
+            applyKnowledge(items);
+        }
+    }
 
-            log.info("知识库重新加载完成");
-        } catch (Exception e) {
-            log.error("重新加载知识库失败", e);
+    /**
+     * 当前知识库中全部条目的来源文件
+     */
+    public Set<String> getKnowledgeSources() {
+        Set<String> sources = new HashSet<>();
+        for (QAItem item : snapshot.get().items) {
+            sources.add(item.getSource());
         }
+        return sources;
+    }
+
+    /**
+     * 按文件增量更新知识库
+     * 用变化文件重新解析出的条目替换同一来源的旧条目，再按内容哈希增量更新索引
+     *
+     * @param changedFiles 来源文件到其最新条目的映射，文件已删除时条目为空列表
+     */
+    public void applyFileChanges(Map<String, List<QAItem>> changedFiles) {
+        synchronized (indexLock) {
+            Map<String, List<QAItem>> bySource = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+            for (QAItem item : snapshot.get().items) {
+                bySource.computeIfAbsent(item.getSource(), source -> new ArrayList<>()).add(item);
+            }
+            for (Map.Entry<String, List<QAItem>> entry : changedFiles.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    bySource.remove(entry.getKey());
+                } else {
+                    bySource.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            List<QAItem> items = new ArrayList<>();
+            bySource.values().forEach(items::addAll);
+            log.info("知识文件变化: {}，更新后共 {} 条", changedFiles.keySet(), items.size());
+            applyKnowledge(items);
+        }
+    }
+
+    /**
+     * 评估HNSW检索的recall@k
+     * 以知识库问题作为查询样本，与精确扫描结果对比
+     */
+    public double evaluateRecall(int k, int samples) {
+        KnowledgeSnapshot state = snapshot.get();
+        VectorIndex index = state.vectors;
+        if (!index.hasHnsw()) {
+            throw new IllegalStateException("当前检索模式未构建HNSW索引");
+        }
+
+        List<QAItem> items = new ArrayList<>(state.items);
+        Collections.shuffle(items);
+
+        double total = 0.0;
+        int evaluated = 0;
+        for (QAItem item : items.subList(0, Math.min(samples, items.size()))) {
+            float[] embedding = embeddingProvider.embed(item.getQuestion());
+            if (embedding != null && embedding.length == index.dimension()) {
+                total += index.recallAtK(VectorStore.normalize(embedding), k);
+                evaluated++;
+            }
+        }
+
+        log.info("HNSW recall@{} 评估完成，样本数: {}", k, evaluated);
+        return evaluated > 0 ? total / evaluated : 0.0;
+    }
+
+    /**
+     * 运行统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        KnowledgeSnapshot state = snapshot.get();
+        stats.put("knowledgeItems", state.items.size());
+        stats.put("indexedVectors", state.vectors.size());
+        stats.put("faqHits", faqHits.sum());
+        stats.put("queryEmbeddingCache", queryEmbeddingCache.getStats());
+        stats.put("answerCache", answerCache.getStats());
+        return stats;
+    }
+
+    /**
+     * 构建关键词倒排索引，内容未变化的条目复用上一版的分词结果
+     */
+    private Bm25Index buildLexicalIndex(List<QAItem> items, Bm25Index previous) {
+        RAGConfiguration.Keyword keyword = ragConfig.getSearch().getKeyword();
+        Bm25Index.Builder builder = Bm25Index.builder(keyword.getK1(), keyword.getB(), previous);
+        for (QAItem item : items) {
+            builder.add(item.getId(), ContentHash.of(item.getQuestion(), item.getAnswer()),
+                    item.getQuestion() + " " + item.getAnswer());
+        }
+        Bm25Index index = builder.build();
+        log.info("关键词索引构建完成，文档 {} 个，词项 {} 个，复用分词 {} 个",
+                index.size(), index.termCount(), builder.getReused());
+        return index;
+    }
+
+    /**
+     * 用知识库问题构建常见问题匹配自动机
+     */
+    private FaqMatcher buildFaqMatcher(List<QAItem> items) {
+        List<String> ids = new ArrayList<>(items.size());
+        List<String> questions = new ArrayList<>(items.size());
+        for (QAItem item : items) {
+            ids.add(item.getId());
+            questions.add(item.getQuestion());
+        }
+        return new FaqMatcher(ids, questions, ragConfig.getSearch().getFaq().getMinContainedLength());
+    }
+
+    /**
+     * 按配置创建向量索引
+     */
+    private VectorIndex createVectorIndex() {
+        RAGConfiguration.Search search = ragConfig.getSearch();
+        if (!VectorIndex.MODE_HNSW.equals(search.getMode())) {
+            return new VectorIndex(scoringKernel, parallelScanner);
+        }
+
+        RAGConfiguration.Hnsw hnsw = search.getHnsw();
+        log.info("启用HNSW索引，M: {}, efConstruction: {}, efSearch: {}",
+                hnsw.getM(), hnsw.getEfConstruction(), hnsw.getEfSearch());
+        return new VectorIndex(scoringKernel, parallelScanner,
+                hnsw.getM(), hnsw.getEfConstruction(), hnsw.getEfSearch());
     }
 
     /**
@@ -348,16 +1016,31 @@ public class EnhancedRAGService {
         }
     }
 
+    /**
+     * 向量召回结果
+     */
+    private static class VectorCandidates {
+        final float[] query;
+        final List<QAMatch> matches;
+
+        VectorCandidates(float[] query, List<QAMatch> matches) {
+            this.query = query;
+            this.matches = matches;
+        }
+    }
+
     /**
      * QA匹配结果类
      */
     private static class QAMatch {
         final QAItem qaItem;
         final double similarity;
+        final long contentHash;
 
-        QAMatch(QAItem qaItem, double similarity) {
+        QAMatch(QAItem qaItem, double similarity, long contentHash) {
             this.qaItem = qaItem;
             this.similarity = similarity;
+            this.contentHash = contentHash;
         }
     }
 }
@@ -0,0 +1,42 @@
+package com.echo.ragtry.service;
+
+import com.echo.ragtry.entity.QAItem;
+import com.echo.ragtry.search.Bm25Index;
+import com.echo.ragtry.search.FaqMatcher;
+import com.echo.ragtry.search.VectorIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 知识库快照：条目、ID索引、向量索引、关键词索引与常见问题匹配器
+ *
+ * 快照发布后不再修改：写入方在快照之外构建好全部索引，再整体替换当前快照，
+ * 读取方一次读取即可拿到彼此一致的条目与索引，无需加锁
+ */
+final class KnowledgeSnapshot {
+
+    final List<QAItem> items;
+    final Map<String, QAItem> itemsById;
+    final VectorIndex vectors;
+    final Bm25Index lexical;
+    final FaqMatcher faq;
+
+    /**
+     * @param vectors 已写入全部向量的索引，发布后不得再写入
+     */
+    KnowledgeSnapshot(List<QAItem> items, VectorIndex vectors, Bm25Index lexical, FaqMatcher faq) {
+        Map<String, QAItem> byId = new HashMap<>();
+        for (QAItem item : items) {
+            byId.put(item.getId(), item);
+        }
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.itemsById = Collections.unmodifiableMap(byId);
+        this.vectors = vectors;
+        this.lexical = lexical;
+        this.faq = faq;
+    }
+}
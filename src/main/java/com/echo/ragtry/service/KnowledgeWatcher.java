@@ -0,0 +1,239 @@
+package com.echo.ragtry.service;
+
+import com.echo.ragtry.config.RAGConfiguration;
+import com.echo.ragtry.entity.QAItem;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 知识库文件监听
+ * rag.knowledge.auto-reload 开启且知识库位于文件系统时，监听目录下MD文档的增删改，
+ * 一批连续修改静默 watch-debounce 毫秒后，只重新解析变化的文件并增量更新索引
+ */
+@Component
+@Slf4j
+public class KnowledgeWatcher {
+
+    @Autowired
+    private RAGConfiguration ragConfig;
+
+    @Autowired
+    private MarkdownKnowledgeLoader knowledgeLoader;
+
+    @Autowired
+    private EnhancedRAGService ragService;
+
+    private WatchService watchService;
+    private Thread watchThread;
+    private Path root;
+
+    /**
+     * 读取失败的单个文件最多重试的次数
+     */
+    private static final int MAX_READ_RETRIES = 5;
+
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+
+    /**
+     * 读取失败待重试的文件及已重试次数，只在监听线程中访问
+     */
+    private final Map<Path, Integer> failedReads = new HashMap<>();
+
+    @PostConstruct
+    public void start() {
+        if (!ragConfig.getKnowledge().isAutoReload()) {
+            return;
+        }
+
+        try {
+            root = knowledgeLoader.resolveWatchDirectory();
+            if (root == null) {
+                log.info("知识库不在文件系统目录中，不启用文件监听");
+                return;
+            }
+
+            watchService = FileSystems.getDefault().newWatchService();
+            registerTree(root);
+
+            watchThread = new Thread(this::watchLoop, "knowledge-watcher");
+            watchThread.setDaemon(true);
+            watchThread.start();
+            log.info("已启用知识库文件监听: {}", root.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("启动知识库文件监听失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watchService == null) {
+            return;
+        }
+        watchThread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("关闭知识库文件监听失败: {}", e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        long debounce = ragConfig.getKnowledge().getWatchDebounce();
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // 有读取失败的文件时不无限等待新事件，静默debounce毫秒后重试
+                Set<Path> changed = new HashSet<>(failedReads.keySet());
+                WatchKey key = changed.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(debounce, TimeUnit.MILLISECONDS);
+                boolean overflow = false;
+
+                // 持续收集直到静默debounce毫秒
+                while (key != null) {
+                    overflow |= collect(key, changed);
+                    key = watchService.poll(debounce, TimeUnit.MILLISECONDS);
+                }
+
+                if (overflow) {
+                    log.warn("文件事件溢出，重新加载整个知识库");
+                    ragService.reloadKnowledge();
+                } else if (!changed.isEmpty()) {
+                    applyChanges(changed);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("知识库文件监听已关闭");
+        }
+    }
+
+    /**
+     * 收集一个目录上的事件，返回是否发生事件溢出
+     */
+    private boolean collect(WatchKey key, Set<Path> changed) {
+        Path dir = watchedDirs.get(key);
+        boolean overflow = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // 新建的子目录需要注册，其中已有的文件按新增处理
+                try {
+                    registerTree(path);
+                    try (Stream<Path> files = Files.walk(path)) {
+                        files.filter(Files::isRegularFile).forEach(changed::add);
+                    }
+                } catch (IOException e) {
+                    log.warn("监听新目录失败: {}", path, e);
+                }
+            } else {
+                changed.add(path);
+            }
+        }
+
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+        return overflow;
+    }
+
+    /**
+     * 重新解析变化的文件；已删除的路径如果不是MD文件，视为目录，其下全部来源一并删除。
+     * 读取失败（如编辑器正在保存）的文件保留当前条目，稍后重试
+     */
+    private void applyChanges(Set<Path> changed) {
+        Map<String, List<QAItem>> changedFiles = new HashMap<>();
+        Set<String> removedDirs = new HashSet<>();
+
+        for (Path path : changed) {
+            String name = knowledgeLoader.relativeName(root, path);
+            if (!name.endsWith(".md")) {
+                if (!Files.exists(path)) {
+                    removedDirs.add(name + "/");
+                }
+                continue;
+            }
+            if (Files.isRegularFile(path)) {
+                List<QAItem> items = new ArrayList<>();
+                if (knowledgeLoader.parseFile(knowledgeLoader.fileAt(root, path), items::add)) {
+                    changedFiles.put(name, items);
+                    failedReads.remove(path);
+                } else {
+                    scheduleRetry(path, name);
+                }
+            } else {
+                changedFiles.put(name, new ArrayList<>());
+                failedReads.remove(path);
+            }
+        }
+
+        if (!removedDirs.isEmpty()) {
+            for (String source : ragService.getKnowledgeSources()) {
+                if (source != null && removedDirs.stream().anyMatch(source::startsWith)) {
+                    changedFiles.putIfAbsent(source, new ArrayList<>());
+                }
+            }
+        }
+
+        if (!changedFiles.isEmpty()) {
+            ragService.applyFileChanges(changedFiles);
+        }
+    }
+
+    /**
+     * 记录读取失败的文件，超过重试次数后放弃，该文件保留上次成功解析的条目直到再次变化
+     */
+    private void scheduleRetry(Path path, String name) {
+        int attempts = failedReads.getOrDefault(path, 0) + 1;
+        if (attempts > MAX_READ_RETRIES) {
+            failedReads.remove(path);
+            log.warn("知识文件 {} 连续读取失败 {} 次，保留原有条目，等待文件再次变化", name, MAX_READ_RETRIES);
+            return;
+        }
+        failedReads.put(path, attempts);
+        log.warn("知识文件 {} 读取失败，保留原有条目，稍后第 {} 次重试", name, attempts);
+    }
+
+    private void registerTree(Path start) throws IOException {
+        try (Stream<Path> dirs = Files.walk(start)) {
+            for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirs.put(key, dir);
+            }
+        }
+    }
+}
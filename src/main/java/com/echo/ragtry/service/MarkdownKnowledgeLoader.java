@@ -1,148 +1,255 @@
 package com.echo.ragtry.service;
 
+import com.echo.ragtry.config.RAGConfiguration;
 import com.echo.ragtry.entity.QAItem;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Markdown知识库加载器
- * 从MD文档中解析QA对
+ * 从 rag.knowledge.base-path 目录（文件系统或classpath）下的全部MD文档中解析QA对，
+ * 多个文件在有界线程池中并行解析，单个文件由 {@link MarkdownQAParser} 流式解析
  */
 @Component
 @Slf4j
 public class MarkdownKnowledgeLoader {
 
-    private static final String KNOWLEDGE_FILE = "knowledge/bot.md";
-    private static final Pattern CATEGORY_PATTERN = Pattern.compile("^## (.+)$");
-    private static final Pattern QUESTION_PATTERN = Pattern.compile("^### Q: (.+)$");
-    private static final Pattern ANSWER_PATTERN = Pattern.compile("^\\*\\*A:\\*\\* (.+)$");
+    private static final String CLASSPATH_PREFIX = "classpath:";
+    private static final String FILE_PREFIX = "file:";
+    private static final String MARKDOWN_SUFFIX = ".md";
+
+    @Autowired
+    private RAGConfiguration ragConfig;
+
+    private ExecutorService parseExecutor;
+
+    @PostConstruct
+    public void init() {
+        int threads = ragConfig.getKnowledge().getLoaderThreads();
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        parseExecutor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("knowledge-loader-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parseExecutor.shutdown();
+    }
 
     /**
-     * 从MD文档加载知识库
+     * 从MD文档加载知识库，启动时使用
+     * 单个文件读取失败时跳过该文件，整体加载失败时使用默认知识库
      */
     public List<QAItem> loadKnowledge() {
-        List<QAItem> qaItems = new ArrayList<>();
-
         try {
-            String content = readMarkdownFile();
-            qaItems = parseMarkdownContent(content);
-
-            log.info("从MD文档加载知识库完成，共解析 {} 条QA对", qaItems.size());
-
+            return readKnowledge(true);
         } catch (Exception e) {
             log.error("加载MD知识库失败，使用默认知识库", e);
             // 返回默认知识库，避免系统崩溃
-            qaItems = getDefaultKnowledge();
+            return getDefaultKnowledge();
         }
-
-        return qaItems;
     }
 
     /**
-     * 读取MD文件内容
+     * 重新读取全部MD文档，任一文件读取失败即抛出异常，
+     * 调用方应保留当前知识库，而不是把读取失败的文件当作没有条目
      */
-    private String readMarkdownFile() throws IOException {
-        try {
-            ClassPathResource resource = new ClassPathResource(KNOWLEDGE_FILE);
-            StringBuilder content = new StringBuilder();
+    public List<QAItem> reloadKnowledgeFiles() throws IOException {
+        return readKnowledge(false);
+    }
 
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+    private List<QAItem> readKnowledge(boolean skipUnreadable) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<KnowledgeFile> files = listKnowledgeFiles();
+        if (files.isEmpty()) {
+            throw new IOException("知识库目录下没有MD文档: " + ragConfig.getKnowledge().getBasePath());
+        }
 
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
+        // 按文件并行解析，结果按文件路径顺序合并
+        List<Future<List<QAItem>>> futures = new ArrayList<>(files.size());
+        for (KnowledgeFile file : files) {
+            futures.add(parseExecutor.submit(() -> {
+                if (!skipUnreadable) {
+                    return parseFile(file);
                 }
+                List<QAItem> items = new ArrayList<>();
+                return parseFile(file, items::add) ? items : new ArrayList<QAItem>();
+            }));
+        }
+        List<QAItem> qaItems = new ArrayList<>();
+        try {
+            for (Future<List<QAItem>> future : futures) {
+                qaItems.addAll(future.get());
             }
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("加载知识库被中断");
+        }
 
-            log.debug("成功从classpath读取文件: {}", KNOWLEDGE_FILE);
-            return content.toString();
+        log.info("从 {} 个MD文档加载知识库完成，共解析 {} 条QA对，耗时: {}ms",
+                files.size(), qaItems.size(), System.currentTimeMillis() - startTime);
+        return qaItems;
+    }
 
-        } catch (Exception e) {
-            log.error("从classpath读取MD文件失败", e);
-            throw new IOException("无法读取知识库文件: " + KNOWLEDGE_FILE, e);
+    /**
+     * 解析单个MD文件，读取失败时抛出异常
+     */
+    List<QAItem> parseFile(KnowledgeFile file) throws IOException {
+        List<QAItem> items = new ArrayList<>();
+        try (ReadableByteChannel channel = file.resource.readableChannel()) {
+            MarkdownQAParser.parse(channel, file.name, items::add);
+        } catch (IOException e) {
+            throw new IOException("读取MD文件失败: " + file.name, e);
         }
+        return items;
     }
 
     /**
-     * 解析MD内容为QA对
+     * 流式解析单个MD文件，每解析出一条QA对回调一次consumer，返回是否读取成功
      */
-    private List<QAItem> parseMarkdownContent(String content) {
-        List<QAItem> qaItems = new ArrayList<>();
-        String[] lines = content.split("\n");
-
-        String currentCategory = "通用";
-        String currentQuestion = null;
-        StringBuilder currentAnswer = new StringBuilder();
-        int qaCounter = 1;
+    boolean parseFile(KnowledgeFile file, Consumer<QAItem> consumer) {
+        try (ReadableByteChannel channel = file.resource.readableChannel()) {
+            MarkdownQAParser.parse(channel, file.name, consumer);
+            return true;
+        } catch (IOException e) {
+            log.error("读取MD文件失败: {}", file.name, e);
+            return false;
+        }
+    }
 
-        for (String line : lines) {
-            line = line.trim();
+    /**
+     * 列出知识库目录下的全部MD文档，按相对路径排序
+     * base-path 可带 classpath: 或 file: 前缀，不带前缀时优先使用文件系统目录
+     */
+    List<KnowledgeFile> listKnowledgeFiles() throws IOException {
+        String basePath = ragConfig.getKnowledge().getBasePath();
 
-            // 匹配分类
-            Matcher categoryMatcher = CATEGORY_PATTERN.matcher(line);
-            if (categoryMatcher.matches()) {
-                currentCategory = categoryMatcher.group(1);
-                continue;
+        if (!basePath.startsWith(CLASSPATH_PREFIX)) {
+            Path dir = Paths.get(basePath.startsWith(FILE_PREFIX) ? basePath.substring(FILE_PREFIX.length()) : basePath);
+            if (Files.isDirectory(dir)) {
+                return listFileSystem(dir);
+            }
+            if (basePath.startsWith(FILE_PREFIX)) {
+                throw new IOException("知识库目录不存在: " + dir.toAbsolutePath());
             }
+        }
 
-            // 匹配问题
-            Matcher questionMatcher = QUESTION_PATTERN.matcher(line);
-            if (questionMatcher.matches()) {
-                // 保存上一个QA对
-                if (currentQuestion != null && currentAnswer.length() > 0) {
-                    QAItem item = new QAItem(
-                            "qa_" + String.format("%03d", qaCounter++),
-                            currentQuestion,
-                            currentAnswer.toString().trim(),
-                            currentCategory);
-                    qaItems.add(item);
-                }
+        String location = basePath.startsWith(CLASSPATH_PREFIX) ? basePath.substring(CLASSPATH_PREFIX.length()) : basePath;
+        return listClasspath(trimSlashes(location));
+    }
 
-                // 开始新的问题
-                currentQuestion = questionMatcher.group(1);
-                currentAnswer = new StringBuilder();
-                continue;
-            }
+    /**
+     * 可监听的知识库文件系统目录；知识库打包在jar中等无法监听的情况返回null
+     */
+    Path resolveWatchDirectory() {
+        String basePath = ragConfig.getKnowledge().getBasePath();
 
-            // 匹配答案开始
-            Matcher answerMatcher = ANSWER_PATTERN.matcher(line);
-            if (answerMatcher.matches()) {
-                currentAnswer.append(answerMatcher.group(1));
-                continue;
+        if (!basePath.startsWith(CLASSPATH_PREFIX)) {
+            Path dir = Paths.get(basePath.startsWith(FILE_PREFIX) ? basePath.substring(FILE_PREFIX.length()) : basePath);
+            if (Files.isDirectory(dir)) {
+                return dir;
             }
+            if (basePath.startsWith(FILE_PREFIX)) {
+                return null;
+            }
+        }
 
-            // 继续答案内容（非空行且不是标题）
-            if (currentQuestion != null && !line.isEmpty() &&
-                    !line.startsWith("#") && !line.startsWith("**A:**")) {
-                if (currentAnswer.length() > 0) {
-                    currentAnswer.append("\n");
-                }
-                currentAnswer.append(line);
+        String location = basePath.startsWith(CLASSPATH_PREFIX) ? basePath.substring(CLASSPATH_PREFIX.length()) : basePath;
+        try {
+            URL url = new ClassPathResource(trimSlashes(location)).getURL();
+            if ("file".equals(url.getProtocol())) {
+                Path dir = Paths.get(url.toURI());
+                return Files.isDirectory(dir) ? dir : null;
             }
+        } catch (IOException | URISyntaxException e) {
+            log.debug("classpath知识库目录不可监听: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 文件相对知识库根目录的路径，作为条目来源
+     */
+    String relativeName(Path root, Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    KnowledgeFile fileAt(Path root, Path file) {
+        return new KnowledgeFile(relativeName(root, file), new FileSystemResource(file));
+    }
+
+    private List<KnowledgeFile> listFileSystem(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            List<KnowledgeFile> files = paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().endsWith(MARKDOWN_SUFFIX))
+                    .map(path -> fileAt(dir, path))
+                    .sorted(Comparator.comparing(file -> file.name))
+                    .collect(Collectors.toList());
+            log.debug("从文件系统目录 {} 找到 {} 个MD文档", dir.toAbsolutePath(), files.size());
+            return files;
         }
+    }
 
-        // 保存最后一个QA对
-        if (currentQuestion != null && currentAnswer.length() > 0) {
-            QAItem item = new QAItem(
-                    "qa_" + String.format("%03d", qaCounter),
-                    currentQuestion,
-                    currentAnswer.toString().trim(),
-                    currentCategory);
-            qaItems.add(item);
+    private List<KnowledgeFile> listClasspath(String location) throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver()
+                .getResources("classpath*:" + location + "/**/*" + MARKDOWN_SUFFIX);
+
+        String marker = "/" + location + "/";
+        List<KnowledgeFile> files = new ArrayList<>(resources.length);
+        for (Resource resource : resources) {
+            String url = resource.getURL().toString();
+            int index = url.lastIndexOf(marker);
+            String name = index >= 0 ? url.substring(index + marker.length()) : resource.getFilename();
+            files.add(new KnowledgeFile(name, resource));
         }
+        files.sort(Comparator.comparing(file -> file.name));
+        log.debug("从classpath目录 {} 找到 {} 个MD文档", location, files.size());
+        return files;
+    }
 
-        return qaItems;
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
     }
 
     /**
@@ -170,5 +277,17 @@ public class MarkdownKnowledgeLoader {
         log.info("正在重新加载知识库...");
         // 这里可以添加缓存清理等逻辑
     }
-}
 
+    /**
+     * 知识库中的一个MD文档
+     */
+    static final class KnowledgeFile {
+        final String name;
+        final Resource resource;
+
+        KnowledgeFile(String name, Resource resource) {
+            this.name = name;
+            this.resource = resource;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.echo.ragtry.service;
+
+import com.echo.ragtry.entity.QAItem;
+import com.echo.ragtry.search.ContentHash;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 流式Markdown QA解析器
+ * 从通道中逐行读取，按行首前缀识别分类、问题与答案，每解析完一条QA对立即交给consumer，
+ * 内存占用与文件大小无关
+ *
+ * 格式：
+ * <pre>
+ * ## 分类
+ * ### Q: 问题
+ * **A:** 答案（后续非标题行视为答案的续行）
+ * </pre>
+ */
+class MarkdownQAParser {
+
+    private static final String CATEGORY_PREFIX = "## ";
+    private static final String QUESTION_PREFIX = "### Q: ";
+    private static final String ANSWER_PREFIX = "**A:** ";
+    private static final String ANSWER_MARK = "**A:**";
+    private static final String DEFAULT_CATEGORY = "通用";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private MarkdownQAParser() {
+    }
+
+    /**
+     * 解析UTF-8编码的MD内容，解析完毕或出错后不关闭通道
+     *
+     * @param source 来源文件相对路径，参与生成稳定ID
+     */
+    static void parse(ReadableByteChannel channel, String source, Consumer<QAItem> consumer) throws IOException {
+        BufferedReader reader = new BufferedReader(Channels.newReader(channel,
+                StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE),
+                BUFFER_SIZE), BUFFER_SIZE);
+
+        Map<String, Integer> seenIds = new HashMap<>();
+        String category = DEFAULT_CATEGORY;
+        String question = null;
+        StringBuilder answer = new StringBuilder();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+
+            if (hasContent(line, CATEGORY_PREFIX)) {
+                category = line.substring(CATEGORY_PREFIX.length());
+                continue;
+            }
+
+            if (hasContent(line, QUESTION_PREFIX)) {
+                // 上一个QA对到此结束
+                if (question != null && answer.length() > 0) {
+                    consumer.accept(createItem(source, category, question, answer.toString().trim(), seenIds));
+                }
+                question = line.substring(QUESTION_PREFIX.length());
+                answer.setLength(0);
+                continue;
+            }
+
+            if (hasContent(line, ANSWER_PREFIX)) {
+                answer.append(line, ANSWER_PREFIX.length(), line.length());
+                continue;
+            }
+
+            // 答案续行（非空行且不是标题）
+            if (question != null && !line.isEmpty() && line.charAt(0) != '#' && !line.startsWith(ANSWER_MARK)) {
+                if (answer.length() > 0) {
+                    answer.append('\n');
+                }
+                answer.append(line);
+            }
+        }
+
+        if (question != null && answer.length() > 0) {
+            consumer.accept(createItem(source, category, question, answer.toString().trim(), seenIds));
+        }
+    }
+
+    /**
+     * 行以前缀开头且前缀后还有内容
+     */
+    private static boolean hasContent(String line, String prefix) {
+        return line.length() > prefix.length() && line.startsWith(prefix);
+    }
+
+    /**
+     * 创建QA对，ID由来源文件、分类与问题标题决定，增删其他条目不会改变已有条目的ID；
+     * 同一文件同一分类下重复的问题依次追加序号
+     */
+    private static QAItem createItem(String source, String category, String question, String answer,
+                                     Map<String, Integer> seenIds) {
+        String id = "qa_" + Long.toHexString(ContentHash.of(source, category + "\n" + question));
+        int occurrence = seenIds.merge(id, 1, Integer::sum);
+        if (occurrence > 1) {
+            id = id + "_" + occurrence;
+        }
+        return new QAItem(id, question, answer, category, source);
+    }
+}
@@ -0,0 +1,80 @@
+package com.echo.ragtry.service;
+
+import com.echo.ragtry.config.RAGConfiguration;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 查询向量缓存
+ * 以规范化后的问题文本为键缓存归一化向量，容量由 rag.search.embedding-cache-size 控制，
+ * 淘汰策略为W-TinyLFU，热门问题无需重复调用向量化接口
+ */
+@Component
+@Slf4j
+public class QueryEmbeddingCache {
+
+    private static final String TRAILING_PUNCTUATION = "?？!！。.,，~～ ";
+
+    private final Cache<String, float[]> cache;
+
+    public QueryEmbeddingCache(RAGConfiguration ragConfig) {
+        int size = Math.max(ragConfig.getSearch().getEmbeddingCacheSize(), 0);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(size)
+                .recordStats()
+                .build();
+        log.info("查询向量缓存容量: {}", size);
+    }
+
+    /**
+     * 获取问题的向量，未命中时调用loader计算，loader返回null时不缓存
+     * 计算在调用线程上进行，不持有缓存内部锁
+     */
+    public float[] get(String text, Function<String, float[]> loader) {
+        String key = normalize(text);
+        float[] embedding = cache.getIfPresent(key);
+        if (embedding != null) {
+            return embedding;
+        }
+
+        embedding = loader.apply(text);
+        if (embedding != null) {
+            cache.put(key, embedding);
+        }
+        return embedding;
+    }
+
+    /**
+     * 缓存命中、未命中与淘汰统计
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        result.put("hitRate", stats.hitRate());
+        return result;
+    }
+
+    /**
+     * 规范化问题文本：去除首尾空白和结尾标点、合并连续空白、统一小写
+     */
+    static String normalize(String text) {
+        String normalized = text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        int end = normalized.length();
+        while (end > 0 && TRAILING_PUNCTUATION.indexOf(normalized.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return normalized.substring(0, end);
+    }
+}
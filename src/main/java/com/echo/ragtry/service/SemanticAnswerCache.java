@@ -0,0 +1,178 @@
+package com.echo.ragtry.service;
+
+import com.echo.ragtry.config.RAGConfiguration;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 语义答案缓存
+ * 缓存(查询向量, 检索到的知识条目, 生成的答案)，新问题检索到相同的知识条目且
+ * 查询向量足够相似时直接复用答案，跳过大模型生成
+ *
+ * 缓存按检索结果分桶，键由条目ID及其内容哈希按检索顺序组成，知识内容变化后旧答案自然失效；
+ * 同一个桶内只需比较少量查询向量
+ */
+@Component
+@Slf4j
+public class SemanticAnswerCache {
+
+    /**
+     * 每个桶最多保留的答案数，超出时淘汰最早写入的
+     */
+    private static final int MAX_BUCKET_SIZE = 8;
+
+    private final RAGConfiguration.AnswerCache config;
+    private final Cache<String, Bucket> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SemanticAnswerCache(RAGConfiguration ragConfig) {
+        this.config = ragConfig.getAnswerCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(config.getMaxEntries(), 0))
+                .weigher((String key, Bucket bucket) -> bucket.entries.length)
+                .expireAfterWrite(config.getTtl(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        log.info("语义答案缓存: 启用 {}，相似度阈值 {}，容量 {}，有效期 {} 秒",
+                config.isEnabled(), config.getSimilarityThreshold(), config.getMaxEntries(), config.getTtl());
+    }
+
+    /**
+     * 查找可复用的答案
+     *
+     * @param query   归一化的查询向量
+     * @param itemIds 检索到的知识条目ID，按相似度降序
+     * @param hashes  与itemIds对应的内容哈希
+     */
+    public String get(float[] query, List<String> itemIds, long[] hashes) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+
+        Bucket bucket = cache.getIfPresent(key(itemIds, hashes));
+        if (bucket != null) {
+            long now = System.currentTimeMillis();
+            long ttl = TimeUnit.SECONDS.toMillis(config.getTtl());
+            for (Entry entry : bucket.entries) {
+                if (now - entry.createdAt < ttl && dot(query, entry.query) >= config.getSimilarityThreshold()) {
+                    hits.increment();
+                    return entry.answer;
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入生成的答案
+     */
+    public void put(float[] query, List<String> itemIds, long[] hashes, String answer) {
+        if (!config.isEnabled() || answer == null) {
+            return;
+        }
+
+        Entry entry = new Entry(query, answer, System.currentTimeMillis());
+        cache.asMap().compute(key(itemIds, hashes), (key, bucket) -> {
+            if (bucket == null) {
+                return new Bucket(itemIds.toArray(new String[0]), new Entry[]{entry});
+            }
+            int keep = Math.min(bucket.entries.length, MAX_BUCKET_SIZE - 1);
+            Entry[] entries = new Entry[keep + 1];
+            entries[0] = entry;
+            System.arraycopy(bucket.entries, 0, entries, 1, keep);
+            return new Bucket(bucket.itemIds, entries);
+        });
+    }
+
+    /**
+     * 使引用了指定知识条目的答案失效
+     */
+    public void invalidateItems(Collection<String> itemIds) {
+        if (itemIds.isEmpty()) {
+            return;
+        }
+        int before = cache.asMap().size();
+        cache.asMap().values().removeIf(bucket -> {
+            for (String id : bucket.itemIds) {
+                if (itemIds.contains(id)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        log.info("知识变更，语义答案缓存失效 {} 组", before - cache.asMap().size());
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", config.isEnabled());
+        result.put("entries", cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        result.put("hits", hitCount);
+        result.put("misses", missCount);
+        result.put("hitRate", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0);
+        result.put("evictions", cache.stats().evictionCount());
+        return result;
+    }
+
+    private static String key(List<String> itemIds, long[] hashes) {
+        StringBuilder key = new StringBuilder(itemIds.size() * 24);
+        for (int i = 0; i < itemIds.size(); i++) {
+            key.append(itemIds.get(i)).append('#').append(Long.toHexString(hashes[i])).append('|');
+        }
+        return key.toString();
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1.0;
+        }
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 同一组检索结果下的答案，新写入的在前；整体替换，不原地修改
+     */
+    private static final class Bucket {
+        final String[] itemIds;
+        final Entry[] entries;
+
+        Bucket(String[] itemIds, Entry[] entries) {
+            this.itemIds = itemIds;
+            this.entries = entries;
+        }
+    }
+
+    private static final class Entry {
+        final float[] query;
+        final String answer;
+        final long createdAt;
+
+        Entry(float[] query, String answer, long createdAt) {
+            this.query = query;
+            this.answer = answer;
+            this.createdAt = createdAt;
+        }
+    }
+}
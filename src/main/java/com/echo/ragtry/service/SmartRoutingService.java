@@ -8,9 +8,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
-
-import java.util.concurrent.CompletableFuture;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * 智能路由服务
@@ -29,190 +37,280 @@ public class SmartRoutingService {
     @Autowired
     private SmartRoutingConfiguration routingConfig;
 
-    /**
-     * 智能路由处理消息
-     */
-    public ChatMessageResponse routeMessage(ChatMessageRequest request) {
-        return routeMessage(request, "default-user");
+    private BackendStats ragStats;
+
+    private BackendStats difyStats;
+
+    @PostConstruct
+    public void init() {
+        int window = routingConfig.getHedge().getWindow();
+        double alpha = routingConfig.getAdaptive().getAlpha();
+        ragStats = new BackendStats(CustomerServiceConstant.SmartRouting.SERVICE_RAG, window, alpha);
+        difyStats = new BackendStats(CustomerServiceConstant.SmartRouting.SERVICE_DIFY, window, alpha);
     }
 
     /**
-     * 智能路由处理消息
+     * 非阻塞智能路由处理消息
+     * 等待Dify与大模型响应期间不占用线程；优先策略在主服务没有有效响应时降级到另一服务，
+     * 并行与对冲策略返回最先到达的有效响应并取消另一路仍在进行的调用，超时或均无效时返回错误响应
      */
-    public ChatMessageResponse routeMessage(ChatMessageRequest request, String userId) {
+    public Mono<ChatMessageResponse> routeMessageReactive(ChatMessageRequest request, String userId) {
         if (!routingConfig.isEnabled()) {
-            // 如果未启用智能路由，默认使用RAG
-            return useRAGService(request, userId);
+            return useRAGServiceReactive(request)
+                    .defaultIfEmpty(createErrorResponse("RAG服务不可用"));
         }
 
         String strategy = routingConfig.getStrategy();
-        log.info("使用路由策略: {} 处理消息: {}", strategy, request.getMessage());
+        log.info("使用路由策略: {} 非阻塞处理消息: {}", strategy, request.getMessage());
 
-        switch (strategy) {
-            case CustomerServiceConstant.SmartRouting.STRATEGY_RAG_FIRST:
-                return ragFirstStrategy(request, userId);
+        Mono<ChatMessageResponse> rag = useRAGServiceReactive(request).filter(this::isValidResponse);
+        Mono<ChatMessageResponse> dify = useDifyServiceReactive(request, userId).filter(this::isValidResponse);
 
+        Mono<ChatMessageResponse> routed;
+        switch (strategy) {
             case CustomerServiceConstant.SmartRouting.STRATEGY_DIFY_FIRST:
-                return difyFirstStrategy(request, userId);
+                routed = withFallbackReactive(dify, rag, "Dify响应无效，降级到RAG服务");
+                break;
 
             case CustomerServiceConstant.SmartRouting.STRATEGY_PARALLEL:
-                return parallelStrategy(request, userId);
+                routed = Flux.merge(dify, rag)
+                        .next()
+                        .timeout(Duration.ofSeconds(routingConfig.getTimeout()), Mono.empty());
+                break;
+
+            case CustomerServiceConstant.SmartRouting.STRATEGY_HEDGED:
+                routed = isDifyPrimary()
+                        ? hedgedReactive(dify, rag, hedgeDelayMillis(difyStats), CustomerServiceConstant.SmartRouting.SERVICE_RAG)
+                        : hedgedReactive(rag, dify, hedgeDelayMillis(ragStats), CustomerServiceConstant.SmartRouting.SERVICE_DIFY);
+                break;
+
+            case CustomerServiceConstant.SmartRouting.STRATEGY_ADAPTIVE:
+                routed = adaptivePrefersDify()
+                        ? withFallbackReactive(dify, rag, "Dify响应无效，降级到RAG服务")
+                        : withFallbackReactive(rag, dify, "RAG响应无效，降级到Dify服务");
+                break;
 
             default:
-                log.warn("未知的路由策略: {}, 使用RAG优先策略", strategy);
-                return ragFirstStrategy(request, userId);
+                if (!CustomerServiceConstant.SmartRouting.STRATEGY_RAG_FIRST.equals(strategy)) {
+                    log.warn("未知的路由策略: {}, 使用RAG优先策略", strategy);
+                }
+                routed = withFallbackReactive(rag, dify, "RAG响应无效，降级到Dify服务");
+                break;
         }
+        return routed.defaultIfEmpty(createErrorResponse("所有服务都不可用"));
     }
 
     /**
-     * RAG优先策略：优先使用RAG，失败时使用Dify
+     * 启用降级时，主服务没有有效响应再订阅降级服务
      */
-    private ChatMessageResponse ragFirstStrategy(ChatMessageRequest request, String userId) {
-        try {
-            // 首先尝试RAG
-            ChatMessageResponse ragResponse = useRAGService(request, userId);
-            if (isValidResponse(ragResponse)) {
-                log.info("RAG优先策略：RAG响应成功");
-                return ragResponse;
-            }
+    private Mono<ChatMessageResponse> withFallbackReactive(Mono<ChatMessageResponse> primary,
+                                                           Mono<ChatMessageResponse> fallback, String reason) {
+        if (!routingConfig.isFallbackEnabled()) {
+            return primary;
+        }
+        return primary.switchIfEmpty(Mono.defer(() -> {
+            log.warn(reason);
+            return fallback;
+        }));
+    }
 
-            if (routingConfig.isFallbackEnabled()) {
-                log.warn("RAG响应无效，降级到Dify服务");
-                ChatMessageResponse difyResponse = useDifyService(request, userId);
-                if (isValidResponse(difyResponse)) {
-                    log.info("RAG优先策略：Dify降级响应成功");
-                    return difyResponse;
+    /**
+     * 非阻塞对冲：先调用主后端，超过对冲延迟仍未响应、或主后端已返回无效响应时再调用对冲后端，
+     * 取最先到达的有效响应，另一路订阅随之取消，进行中的HTTP调用被关闭
+     */
+    private Mono<ChatMessageResponse> hedgedReactive(Mono<ChatMessageResponse> primary, Mono<ChatMessageResponse> secondary,
+                                                     long delayMillis, String secondaryService) {
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> primaryFailed = Sinks.empty();
+            Mono<ChatMessageResponse> first = primary.doOnSuccess(response -> {
+                if (response == null) {
+                    primaryFailed.tryEmitEmpty();
                 }
-            }
+            });
+            Mono<ChatMessageResponse> hedge = Mono.firstWithSignal(Mono.delay(Duration.ofMillis(delayMillis)).then(),
+                            primaryFailed.asMono())
+                    .then(Mono.defer(() -> {
+                        log.info("对冲策略：主后端{}ms内没有有效响应，调用{}", delayMillis, secondaryService);
+                        return secondary;
+                    }));
+            return Flux.merge(first, hedge)
+                    .next()
+                    .timeout(Duration.ofSeconds(routingConfig.getTimeout()), Mono.empty());
+        });
+    }
 
-            return createErrorResponse("所有服务都不可用");
+    /**
+     * 非阻塞使用RAG服务，失败时不返回响应
+     */
+    private Mono<ChatMessageResponse> useRAGServiceReactive(ChatMessageRequest request) {
+        return tracked(ragService.queryReactive(request.getMessage())
+                .map(ragResponse -> {
+                    ChatMessageResponse response = new ChatMessageResponse();
+                    response.setAnswer(ragResponse.getAnswer());
+                    response.setSource(ragResponse.getSource());
+                    response.setResponseMode(CustomerServiceConstant.ResponseMode.BLOCKING);
+                    return response;
+                }), ragStats)
+                .onErrorResume(e -> {
+                    log.error("RAG服务调用失败", e);
+                    return Mono.empty();
+                });
+    }
 
-        } catch (Exception e) {
-            log.error("RAG优先策略执行失败", e);
-            return createErrorResponse("处理请求时发生错误: " + e.getMessage());
-        }
+    /**
+     * 非阻塞使用Dify服务，订阅时才发起调用，失败时不返回响应
+     */
+    private Mono<ChatMessageResponse> useDifyServiceReactive(ChatMessageRequest request, String userId) {
+        return tracked(Mono.defer(() -> difyService.sendMessageReactive(request, userId)), difyStats)
+                .onErrorResume(e -> {
+                    log.error("Dify服务调用失败", e);
+                    return Mono.empty();
+                });
     }
 
     /**
-     * Dify优先策略：优先使用Dify，失败时使用RAG
+     * 订阅时开始计时并计入进行中的调用，返回响应时记录耗时与响应是否有效，调用异常时计入失败
      */
-    private ChatMessageResponse difyFirstStrategy(ChatMessageRequest request, String userId) {
-        try {
-            // 首先尝试Dify
-            ChatMessageResponse difyResponse = useDifyService(request, userId);
-            if (isValidResponse(difyResponse)) {
-                log.info("Dify优先策略：Dify响应成功");
-                return difyResponse;
-            }
+    private Mono<ChatMessageResponse> tracked(Mono<ChatMessageResponse> call, BackendStats stats) {
+        return Mono.defer(() -> {
+            stats.begin();
+            long start = System.nanoTime();
+            return call
+                    .doOnNext(response -> stats.record(elapsedMillis(start), isValidResponse(response)))
+                    .doOnError(e -> stats.recordOutcome(false))
+                    .doFinally(signal -> stats.end());
+        });
+    }
 
-            if (routingConfig.isFallbackEnabled()) {
-                log.warn("Dify响应无效，降级到RAG服务");
-                ChatMessageResponse ragResponse = useRAGService(request, userId);
-                if (isValidResponse(ragResponse)) {
-                    log.info("Dify优先策略：RAG降级响应成功");
-                    return ragResponse;
-                }
-            }
+    /**
+     * 流式调用只计入进行中的调用与首段响应是否有效（没有响应或出错计为失败），首段耗时与完整响应耗时不可比，不参与耗时统计
+     */
+    private Flux<ChatMessageResponse> trackedStream(Flux<ChatMessageResponse> chunks, BackendStats stats) {
+        return Flux.defer(() -> {
+            stats.begin();
+            return chunks
+                    .switchOnFirst((first, stream) -> {
+                        stats.recordOutcome(first.hasValue() && isValidResponse(first.get()));
+                        return stream;
+                    })
+                    .doFinally(signal -> stats.end());
+        });
+    }
 
-            return createErrorResponse("所有服务都不可用");
+    /**
+     * 智能路由流式处理消息
+     * RAG与Dify都逐段推送生成的答案；并行与对冲策略无法同时推送两路回答，流式下按RAG优先处理，
+     * 自适应策略按期望耗时选择先推送的后端
+     */
+    public Flux<ChatMessageResponse> routeMessageStream(ChatMessageRequest request, String userId) {
+        if (!routingConfig.isEnabled()) {
+            return streamRAGService(request);
+        }
 
-        } catch (Exception e) {
-            log.error("Dify优先策略执行失败", e);
-            return createErrorResponse("处理请求时发生错误: " + e.getMessage());
+        return routeStream(request, userId)
+                .switchIfEmpty(Mono.fromSupplier(() -> createErrorResponse("所有服务都不可用")));
+    }
+
+    private Flux<ChatMessageResponse> routeStream(ChatMessageRequest request, String userId) {
+        String strategy = routingConfig.getStrategy();
+        log.info("使用路由策略: {} 流式处理消息: {}", strategy, request.getMessage());
+
+        boolean difyFirst = CustomerServiceConstant.SmartRouting.STRATEGY_DIFY_FIRST.equals(strategy)
+                || (CustomerServiceConstant.SmartRouting.STRATEGY_ADAPTIVE.equals(strategy) && adaptivePrefersDify());
+        if (difyFirst) {
+            Flux<ChatMessageResponse> dify = streamDifyService(request, userId);
+            return routingConfig.isFallbackEnabled()
+                    ? withFallback(dify, () -> streamRAGService(request), "Dify响应无效，降级到RAG服务")
+                    : dify;
         }
+
+        Flux<ChatMessageResponse> rag = streamRAGService(request);
+        return routingConfig.isFallbackEnabled()
+                ? withFallback(rag, () -> streamDifyService(request, userId), "RAG响应无效，降级到Dify服务")
+                : rag;
     }
 
     /**
-     * 并行策略：同时调用Dify和RAG，返回最先成功的结果
+     * 没有响应或首段响应无效时整体切换到降级服务；无效响应（默认回复、繁忙提示）总是整段返回，只需检查首段
      */
-    private ChatMessageResponse parallelStrategy(ChatMessageRequest request, String userId) {
-        try {
-            log.info("开始并行调用Dify和RAG服务");
-
-            // 并行调用两个服务
-            CompletableFuture<ChatMessageResponse> difyFuture = CompletableFuture.supplyAsync(
-                    () -> {
-                        try {
-                            return useDifyService(request, userId);
-                        } catch (Exception e) {
-                            log.warn("并行策略：Dify调用失败", e);
-                            return null;
-                        }
-                    });
-
-            CompletableFuture<ChatMessageResponse> ragFuture = CompletableFuture.supplyAsync(
-                    () -> {
-                        try {
-                            return useRAGService(request, userId);
-                        } catch (Exception e) {
-                            log.warn("并行策略：RAG调用失败", e);
-                            return null;
-                        }
-                    });
-
-            // 等待任意一个完成
-            CompletableFuture<Object> anyOf = CompletableFuture.anyOf(difyFuture, ragFuture);
-
-            try {
-                anyOf.get(routingConfig.getTimeout(), TimeUnit.SECONDS);
-            } catch (Exception e) {
-                log.warn("并行调用超时", e);
+    private Flux<ChatMessageResponse> withFallback(Flux<ChatMessageResponse> primary,
+                                                   Supplier<Flux<ChatMessageResponse>> fallback, String reason) {
+        return primary.switchOnFirst((first, stream) -> {
+            if (first.isOnComplete() || (first.hasValue() && !isValidResponse(first.get()))) {
+                log.warn(reason);
+                return fallback.get();
             }
+            return stream;
+        });
+    }
 
-            // 检查结果
-            ChatMessageResponse difyResult = difyFuture.isDone() ? difyFuture.get() : null;
-            ChatMessageResponse ragResult = ragFuture.isDone() ? ragFuture.get() : null;
-
-            // 选择最佳结果
-            if (isValidResponse(difyResult) && isValidResponse(ragResult)) {
-                // 两个都成功，选择Dify结果（可以根据需要调整优先级）
-                log.info("并行策略：两个服务都成功，选择Dify结果");
-                return difyResult;
-            } else if (isValidResponse(difyResult)) {
-                log.info("并行策略：只有Dify成功");
-                return difyResult;
-            } else if (isValidResponse(ragResult)) {
-                log.info("并行策略：只有RAG成功");
-                return ragResult;
-            }
+    /**
+     * 流式使用RAG服务
+     */
+    private Flux<ChatMessageResponse> streamRAGService(ChatMessageRequest request) {
+        return trackedStream(ragService.streamQuery(request.getMessage())
+                .map(chunk -> {
+                    ChatMessageResponse response = new ChatMessageResponse();
+                    response.setAnswer(chunk.getAnswer());
+                    response.setSource(chunk.getSource());
+                    response.setResponseMode(CustomerServiceConstant.ResponseMode.STREAMING);
+                    return response;
+                }), ragStats);
+    }
 
-            return createErrorResponse("所有服务都不可用");
+    /**
+     * 流式使用Dify服务，调用失败时不再返回后续响应
+     */
+    private Flux<ChatMessageResponse> streamDifyService(ChatMessageRequest request, String userId) {
+        return trackedStream(difyService.streamMessage(request, userId), difyStats)
+                .onErrorResume(e -> {
+                    log.error("Dify流式服务调用失败", e);
+                    return Flux.empty();
+                });
+    }
 
-        } catch (Exception e) {
-            log.error("并行策略执行失败", e);
-            return createErrorResponse("处理请求时发生错误: " + e.getMessage());
+    /**
+     * 自适应策略是否先调用Dify：选择期望耗时较低的后端，并按探索比例改选另一后端。
+     * 只读取内存中的统计，不发起健康检查
+     */
+    private boolean adaptivePrefersDify() {
+        boolean difyFaster = isDifyExpectedFaster();
+        boolean explore = ThreadLocalRandom.current().nextDouble() < routingConfig.getAdaptive().getExploration();
+        if (explore) {
+            log.debug("自适应策略：探索调用{}", difyFaster ? "RAG" : "Dify");
         }
+        return difyFaster != explore;
     }
 
     /**
-     * 使用RAG服务
+     * Dify的期望耗时是否低于RAG，相等时（如尚无统计）优先RAG
      */
-    private ChatMessageResponse useRAGService(ChatMessageRequest request, String userId) {
-        try {
-            String answer = ragService.query(request.getMessage());
-
-            ChatMessageResponse response = new ChatMessageResponse();
-            response.setAnswer(answer);
-            response.setSource(CustomerServiceConstant.SmartRouting.SERVICE_RAG);
-            response.setResponseMode(CustomerServiceConstant.ResponseMode.BLOCKING);
+    private boolean isDifyExpectedFaster() {
+        long errorPenalty = routingConfig.getAdaptive().getErrorPenalty();
+        return difyStats.expectedLatency(errorPenalty) < ragStats.expectedLatency(errorPenalty);
+    }
 
-            return response;
-        } catch (Exception e) {
-            log.error("RAG服务调用失败", e);
-            return null;
-        }
+    /**
+     * 对冲策略的主后端是否为Dify
+     */
+    private boolean isDifyPrimary() {
+        return "dify".equalsIgnoreCase(routingConfig.getHedge().getPrimary());
     }
 
     /**
-     * 使用Dify服务
+     * 对冲延迟：优先使用固定延迟，否则取主后端近期耗时的分位数，样本不足时使用默认延迟
      */
-    private ChatMessageResponse useDifyService(ChatMessageRequest request, String userId) {
-        try {
-            return difyService.sendMessage(request, userId);
-        } catch (Exception e) {
-            log.error("Dify服务调用失败", e);
-            return null;
+    private long hedgeDelayMillis(BackendStats primaryStats) {
+        SmartRoutingConfiguration.Hedge hedge = routingConfig.getHedge();
+        if (hedge.getDelay() > 0) {
+            return hedge.getDelay();
         }
+        long observed = primaryStats.percentile(hedge.getPercentile(), hedge.getMinSamples());
+        return observed >= 0 ? observed : hedge.getDefaultDelay();
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
     }
 
     /**
@@ -231,11 +329,25 @@ public class SmartRoutingService {
     private ChatMessageResponse createErrorResponse(String errorMessage) {
         ChatMessageResponse response = new ChatMessageResponse();
         response.setAnswer("抱歉，" + errorMessage + "。请稍后再试或联系人工客服。");
-        response.setSource("System");
+        response.setSource(CustomerServiceConstant.SmartRouting.SERVICE_SYSTEM);
         response.setResponseMode(CustomerServiceConstant.ResponseMode.BLOCKING);
         return response;
     }
 
+    /**
+     * 各后端近期调用统计，以及当前的对冲延迟与自适应策略优先的后端
+     */
+    public Map<String, Object> getBackendStats() {
+        long errorPenalty = routingConfig.getAdaptive().getErrorPenalty();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put(ragStats.getName(), ragStats.getMetrics(errorPenalty));
+        stats.put(difyStats.getName(), difyStats.getMetrics(errorPenalty));
+        stats.put("adaptivePreferred", isDifyExpectedFaster() ? difyStats.getName() : ragStats.getName());
+        stats.put("hedgePrimary", isDifyPrimary() ? difyStats.getName() : ragStats.getName());
+        stats.put("hedgeDelayMillis", hedgeDelayMillis(isDifyPrimary() ? difyStats : ragStats));
+        return stats;
+    }
+
     /**
      * 获取服务健康状态
      */
@@ -0,0 +1,75 @@
+package com.echo.ragtry.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程工具
+ * 项目以JDK 17为编译目标，虚拟线程API（JDK 21）通过反射调用，运行在更低版本的JDK上时不可用
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+    private static final Method NAME = lookup("java.lang.Thread$Builder", "name", String.class, long.class);
+    private static final Method FACTORY = lookup("java.lang.Thread$Builder", "factory");
+    private static final Method THREAD_PER_TASK = lookup(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && NAME != null && FACTORY != null && THREAD_PER_TASK != null;
+    }
+
+    /**
+     * 创建虚拟线程工厂，线程名为前缀加递增序号
+     */
+    public static ThreadFactory factory(String prefix) {
+        checkSupported();
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("创建虚拟线程工厂失败", e);
+        }
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        try {
+            return (ExecutorService) THREAD_PER_TASK.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("创建虚拟线程执行器失败", e);
+        }
+    }
+
+    private static void checkSupported() {
+        if (!isSupported()) {
+            throw new IllegalStateException("当前JDK不支持虚拟线程: " + System.getProperty("java.version"));
+        }
+    }
+
+    private static Method lookup(String className, String name, Class<?>... parameterTypes) {
+        try {
+            return lookup(Class.forName(className), name, parameterTypes);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method lookup(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -20,6 +20,6 @@ public class ChatMessageResponse {
 
     private String responseMode;
 
-    private String source; // 来源：RAG、Dify、Keyword
+    private String source; // 来源：RAG、Dify、Keyword、FAQ
 }
 
@@ -0,0 +1,93 @@
+package com.echo.ragtry.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * SIMD与标量打分内核的一致性
+ * 两种内核在随机归一化向量上的点积与top-K结果应在float误差范围内一致
+ */
+class ScoringKernelTest {
+
+    private static final float EPSILON = 1e-5f;
+
+    /**
+     * 取非通道宽度整数倍的维度，覆盖SIMD循环之后的尾部
+     */
+    private static final int DIMENSION = 389;
+    private static final int ROWS = 3000;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+
+    private final Random random = new Random(42);
+    private ScoringKernel vector;
+    private ScoringKernel scalar;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "未加载 jdk.incubator.vector 模块");
+        vector = new VectorApiScoringKernel();
+        scalar = new ScalarScoringKernel();
+    }
+
+    @Test
+    void dotMatchesScalarAtAnyOffsetAndLength() {
+        float[] a = randomUnitVector(DIMENSION);
+        float[] b = randomUnitVector(DIMENSION);
+        for (int length = 0; length <= 64; length++) {
+            int aOffset = random.nextInt(DIMENSION - length + 1);
+            int bOffset = random.nextInt(DIMENSION - length + 1);
+            assertEquals(scalar.dot(a, aOffset, b, bOffset, length),
+                    vector.dot(a, aOffset, b, bOffset, length), EPSILON, "length " + length);
+        }
+    }
+
+    @Test
+    void topKMatchesScalar() {
+        VectorIndex vectorIndex = new VectorIndex(vector, null);
+        VectorIndex scalarIndex = new VectorIndex(scalar, null);
+        for (int row = 0; row < ROWS; row++) {
+            float[] embedding = randomUnitVector(DIMENSION);
+            vectorIndex.add("qa_" + row, row, embedding);
+            scalarIndex.add("qa_" + row, row, embedding);
+        }
+
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = randomUnitVector(DIMENSION);
+            List<SearchHit> expected = scalarIndex.search(query, K, -1.0, VectorIndex.MODE_EXACT);
+            List<SearchHit> actual = vectorIndex.search(query, K, -1.0, VectorIndex.MODE_EXACT);
+
+            assertEquals(K, actual.size());
+            Set<Integer> expectedRows = new HashSet<>();
+            for (int i = 0; i < K; i++) {
+                assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), EPSILON, "rank " + i);
+                expectedRows.add(expected.get(i).getRow());
+            }
+
+            // 分数相差不超过误差的条目可能交换名次，只要求其余条目相同
+            float kthScore = expected.get(K - 1).getScore();
+            for (SearchHit hit : actual) {
+                assertTrue(expectedRows.contains(hit.getRow()) || hit.getScore() - kthScore <= EPSILON,
+                        "SIMD结果多出行 " + hit.getRow());
+            }
+        }
+    }
+
+    private float[] randomUnitVector(int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return VectorStore.normalize(vector);
+    }
+}